@@ -25,6 +25,9 @@ public class CollectEnergyEntity {
     // 是否需要重试
     @Setter
     private Boolean needRetry = false;
+    // 首次收取是否使用对冲请求
+    @Setter
+    private Boolean hedge = false;
     /**
      * 构造方法，仅指定用户 ID。
      * @param userId 用户 ID
@@ -1,7 +1,11 @@
 package fansirsqi.xposed.sesame.entity;
 import org.json.JSONException;
 import org.json.JSONObject;
+
+import java.util.Map;
+
 import lombok.Getter;
+import lombok.Setter;
 /**
  * 表示一个 RPC（远程过程调用）实体，用于封装请求和响应数据。
  * 提供线程安全的响应和错误标识。
@@ -36,6 +40,16 @@ public class RpcEntity {
      * 请求的RpcManager名称
      */
     private final String facadeName;
+    /**
+     * 优先级通道，默认取方法声明的通道，可由任务单独指定。
+     */
+    @Setter
+    private volatile RpcLane lane;
+    /**
+     * 请求的绝对截止时间（毫秒），超过后不再等待限流、发起或重试，0 表示不限。
+     */
+    @Setter
+    private volatile long deadline;
     /**
      * 标识请求是否有结果（线程安全）。
      */
@@ -107,6 +121,7 @@ public class RpcEntity {
         this.appName = appName;
         this.methodName = methodName;
         this.facadeName = facadeName;
+        this.lane = RpcLane.of(requestMethod);
     }
     /**
      * 设置响应结果并标记请求已完成。
@@ -125,6 +140,26 @@ public class RpcEntity {
     public void setError() {
         this.hasError = true; // 标记请求发生错误
     }
+    /**
+     * 复制请求，保留通道和截止时间，不含响应状态，用于对冲等需要重新发起相同请求的场景
+     *
+     * @return 新的请求实体
+     */
+    public RpcEntity copy() {
+        RpcEntity rpcEntity = new RpcEntity(requestMethod, requestData, requestRelation, appName, methodName, facadeName);
+        rpcEntity.setLane(lane);
+        rpcEntity.setDeadline(deadline);
+        return rpcEntity;
+    }
+    /**
+     * 请求是否已超过截止时间
+     *
+     * @param now 当前时间（毫秒）
+     * @return true 已过期，未设置截止时间时始终为 false
+     */
+    public boolean isExpired(long now) {
+        return deadline > 0 && now >= deadline;
+    }
     /**
      * 获取Rpc请求字符串
      * @return Rpc请求字符串
@@ -144,4 +179,25 @@ public class RpcEntity {
         jo.put("relationLocal", this.requestRelation);
         return jo.toString();
     }
+    /**
+     * 将Rpc请求数据直接写入目标对象（如支付宝的 fastjson JSONObject），字段与 {@link #getRpcFullRequestData()} 一致，值为 null 的字段不写入
+     *
+     * @param target 目标对象
+     */
+    public void fillRpcFullRequestData(Map<String, Object> target) {
+        target.put("__apiCallStartTime", System.currentTimeMillis());
+        target.put("apiCallLink", "XRiverNotFound");
+        putIfNotNull(target, "appName", this.appName);
+        target.put("execEngine", "XRiver");
+        putIfNotNull(target, "facadeName", this.facadeName);
+        putIfNotNull(target, "methodName", this.methodName);
+        putIfNotNull(target, "operationType", this.requestMethod);
+        putIfNotNull(target, "requestData", this.requestData);
+        putIfNotNull(target, "relationLocal", this.requestRelation);
+    }
+    private static void putIfNotNull(Map<String, Object> target, String key, Object value) {
+        if (value != null) {
+            target.put(key, value);
+        }
+    }
 }
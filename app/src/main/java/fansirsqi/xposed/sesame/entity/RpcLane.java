@@ -0,0 +1,53 @@
+package fansirsqi.xposed.sesame.entity;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RPC 优先级通道，按声明顺序优先级从高到低。
+ * 限流时高优先级通道有请求在等待许可，低优先级通道的请求让行；低优先级请求只使用当前空闲的许可，不提前占用后续许可。
+ * 方法的默认通道由各 *RpcCall 类在静态代码块中通过 {@link #register} 声明，未声明的方法为 {@link #BACKGROUND}，
+ * 也可以通过 {@link RpcEntity#setLane} 为单个请求指定通道。
+ */
+public enum RpcLane {
+    /**
+     * 时效性请求，如收取能量、蹲点收取
+     */
+    CRITICAL,
+    /**
+     * 交互查询，如主页、好友主页、排行榜
+     */
+    INTERACTIVE,
+    /**
+     * 后台任务，如任务中心、兑换、签到
+     */
+    BACKGROUND;
+
+    private static final Map<String, RpcLane> laneMap = new ConcurrentHashMap<>();
+
+    /**
+     * 声明方法的默认通道
+     *
+     * @param lane    通道
+     * @param methods 方法名称
+     */
+    public static void register(RpcLane lane, String... methods) {
+        for (String method : methods) {
+            laneMap.put(method, lane);
+        }
+    }
+
+    /**
+     * 获取方法的默认通道
+     *
+     * @param method 方法名称
+     * @return 通道，未声明时为 {@link #BACKGROUND}
+     */
+    public static RpcLane of(String method) {
+        if (method == null) {
+            return BACKGROUND;
+        }
+        RpcLane lane = laneMap.get(method);
+        return lane == null ? BACKGROUND : lane;
+    }
+}
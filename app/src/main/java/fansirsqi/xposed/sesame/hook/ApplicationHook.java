@@ -47,10 +47,17 @@ import fansirsqi.xposed.sesame.entity.AlipayVersion;
 import fansirsqi.xposed.sesame.entity.FriendWatch;
 import fansirsqi.xposed.sesame.hook.rpc.bridge.NewRpcBridge;
 import fansirsqi.xposed.sesame.hook.rpc.bridge.OldRpcBridge;
+import fansirsqi.xposed.sesame.hook.rpc.bridge.ReplayRpcBridge;
 import fansirsqi.xposed.sesame.hook.rpc.bridge.RpcBridge;
 import fansirsqi.xposed.sesame.hook.rpc.bridge.RpcVersion;
 import fansirsqi.xposed.sesame.hook.rpc.debug.DebugRpc;
+import fansirsqi.xposed.sesame.hook.rpc.breaker.RpcCircuitBreaker;
+import fansirsqi.xposed.sesame.hook.rpc.cache.RpcResponseCache;
+import fansirsqi.xposed.sesame.hook.rpc.clock.ServerClock;
+import fansirsqi.xposed.sesame.hook.rpc.intervallimit.DefaultIntervalLimit;
 import fansirsqi.xposed.sesame.hook.rpc.intervallimit.RpcIntervalLimit;
+import fansirsqi.xposed.sesame.hook.rpc.replay.RpcCaptureRecorder;
+import fansirsqi.xposed.sesame.hook.rpc.stats.RpcStatistics;
 import fansirsqi.xposed.sesame.model.BaseModel;
 import fansirsqi.xposed.sesame.model.Model;
 import fansirsqi.xposed.sesame.task.BaseTask;
@@ -58,6 +65,7 @@ import fansirsqi.xposed.sesame.task.ModelTask;
 import fansirsqi.xposed.sesame.task.TaskCommon;
 import fansirsqi.xposed.sesame.util.AssetUtil;
 import fansirsqi.xposed.sesame.util.Detector;
+import fansirsqi.xposed.sesame.util.GlobalThreadPools;
 import fansirsqi.xposed.sesame.util.Log;
 import fansirsqi.xposed.sesame.util.maps.UserMap;
 import fansirsqi.xposed.sesame.util.Notify;
@@ -551,13 +559,20 @@ public class ApplicationHook implements IXposedHookLoadPackage {
 
                 setWakenAtTimeAlarm();
 
-                if (BaseModel.getNewRpc().getValue()) {
+                String replayCaptureFile = BaseModel.getReplayCaptureFile().getValue();
+                if (replayCaptureFile != null && !replayCaptureFile.trim().isEmpty()) {
+                    rpcBridge = new ReplayRpcBridge(new File(replayCaptureFile.trim()), true, 0);
+                    Log.record(TAG, "使用抓包回放接口：" + replayCaptureFile.trim());
+                } else if (BaseModel.getNewRpc().getValue()) {
                     rpcBridge = new NewRpcBridge();
                 } else {
                     rpcBridge = new OldRpcBridge();
                 }
                 rpcBridge.load();
                 rpcVersion = rpcBridge.getVersion();
+                RpcStatistics.start();
+                int rpcGlobalInterval = BaseModel.getRpcGlobalInterval().getValue();
+                RpcIntervalLimit.setGlobalIntervalLimit(rpcGlobalInterval > 0 ? new DefaultIntervalLimit(rpcGlobalInterval) : null, 10);//账号全局限速，允许 10 次突发
                 if (BaseModel.getNewRpc().getValue() && BaseModel.getDebugMode().getValue()) {
                     HookUtil.INSTANCE.hookRpcBridgeExtension(appLloadPackageParam, BaseModel.getSendHookData().getValue(), BaseModel.getSendHookDataUrl().getValue());
                     HookUtil.INSTANCE.hookDefaultBridgeCallback(appLloadPackageParam);
@@ -594,6 +609,11 @@ public class ApplicationHook implements IXposedHookLoadPackage {
                     Status.unload();
                     Notify.stop();
                     RpcIntervalLimit.clearIntervalLimit();
+                    RpcResponseCache.clear();
+                    ServerClock.clear();
+                    RpcCircuitBreaker.clear();
+                    RpcStatistics.stop();
+                    RpcCaptureRecorder.close();
                     Config.unload();
                     UserMap.unload();
                 }
@@ -606,6 +626,7 @@ public class ApplicationHook implements IXposedHookLoadPackage {
                     rpcBridge.unload();
                     rpcBridge = null;
                 }
+                GlobalThreadPools.shutdownRpcPools();
             } else {
                 ModelTask.stopAllTask();
             }
@@ -5,6 +5,7 @@ import de.robv.android.xposed.XposedBridge
 import de.robv.android.xposed.XposedHelpers
 import de.robv.android.xposed.callbacks.XC_LoadPackage
 import fansirsqi.xposed.sesame.data.General
+import fansirsqi.xposed.sesame.hook.rpc.replay.RpcCaptureRecorder
 import fansirsqi.xposed.sesame.util.Log
 import org.json.JSONObject
 import java.util.concurrent.ConcurrentHashMap
@@ -80,6 +81,9 @@ object HookUtil {
                                         HookSender.sendHookData(res, debugUrl)
                                     }
                                     Log.capture(prettyRecord)
+                                    val requestData = (params as? Map<*, *>)?.get("requestData")?.toString() ?: params.toString()
+                                    val startTime = time as Long
+                                    RpcCaptureRecorder.record(startTime, System.currentTimeMillis() - startTime, method.toString(), requestData, data.toString())
                                 }
                             } catch (e: Exception) {
                                 Log.runtime(TAG, "JSON 构建失败: ${e.message}")
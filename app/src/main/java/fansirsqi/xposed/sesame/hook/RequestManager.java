@@ -1,5 +1,11 @@
 package fansirsqi.xposed.sesame.hook;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
 import fansirsqi.xposed.sesame.entity.RpcEntity;
+import fansirsqi.xposed.sesame.hook.rpc.bridge.RpcHedge;
+import fansirsqi.xposed.sesame.hook.rpc.cache.RpcResponseCache;
+import fansirsqi.xposed.sesame.hook.rpc.cache.RpcSingleFlight;
 /**
  * @author Byseven
  * @date 2025/1/6
@@ -14,40 +20,125 @@ public class RequestManager {
         return result;
     }
 
+    /**
+     * 经过响应缓存发起请求，可缓存方法命中时直接返回，未命中时合并相同的进行中请求，修改类方法成功后清除对应分组的缓存
+     */
+    private static String request(String method, String data, String relation, Supplier<String> request) {
+        String cached = RpcResponseCache.get(method, data, relation);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = RpcResponseCache.getGeneration(method);
+        String result = RpcSingleFlight.execute(method, data, relation, request);
+        RpcResponseCache.put(method, data, relation, result, generation);
+        RpcResponseCache.onResponse(method, result);
+        return result;
+    }
+
     public static String requestString(RpcEntity rpcEntity) {
-        String result = ApplicationHook.rpcBridge.requestString(rpcEntity, 3, -1);
+        String result = request(rpcEntity.getRequestMethod(), rpcEntity.getRequestData(), rpcEntity.getRequestRelation(), () -> ApplicationHook.rpcBridge.requestString(rpcEntity, 3, -1));
         return checkResult(result, rpcEntity.getMethodName());
     }
     public static String requestString(RpcEntity rpcEntity, int tryCount, int retryInterval) {
-        String result = ApplicationHook.rpcBridge.requestString(rpcEntity, tryCount, retryInterval);
+        String result = request(rpcEntity.getRequestMethod(), rpcEntity.getRequestData(), rpcEntity.getRequestRelation(), () -> ApplicationHook.rpcBridge.requestString(rpcEntity, tryCount, retryInterval));
         return checkResult(result, rpcEntity.getMethodName());
     }
     public static String requestString(String method, String data) {
-        String result = ApplicationHook.rpcBridge.requestString(method, data);
+        String result = request(method, data, null, () -> ApplicationHook.rpcBridge.requestString(method, data));
         return checkResult(result, method);
     }
     public static String requestString(String method, String data, String relation) {
-        String result = ApplicationHook.rpcBridge.requestString(method, data, relation);
+        String result = request(method, data, relation, () -> ApplicationHook.rpcBridge.requestString(method, data, relation));
         return checkResult(result, method);
     }
     public static String requestString(String method, String data, String appName, String methodName, String facadeName) {
-        String result = ApplicationHook.rpcBridge.requestString(method, data, appName, methodName, facadeName);
+        String result = request(method, data, null, () -> ApplicationHook.rpcBridge.requestString(method, data, appName, methodName, facadeName));
         return checkResult(result, method);
     }
     public static String requestString(String method, String data, int tryCount, int retryInterval) {
-        String result = ApplicationHook.rpcBridge.requestString(method, data, tryCount, retryInterval);
+        String result = request(method, data, null, () -> ApplicationHook.rpcBridge.requestString(method, data, tryCount, retryInterval));
         return checkResult(result, method);
     }
     public static String requestString(String method, String data, String relation, int tryCount, int retryInterval) {
-        String result = ApplicationHook.rpcBridge.requestString(method, data, relation, tryCount, retryInterval);
+        String result = request(method, data, relation, () -> ApplicationHook.rpcBridge.requestString(method, data, relation, tryCount, retryInterval));
         return checkResult(result, method);
     }
 
     public static void requestObject(RpcEntity rpcEntity, int tryCount, int retryInterval) {
-        ApplicationHook.rpcBridge.requestObject(rpcEntity, tryCount, retryInterval);
+        RpcEntity result = ApplicationHook.rpcBridge.requestObject(rpcEntity, tryCount, retryInterval);
+        if (result != null) {
+            RpcResponseCache.onResponse(rpcEntity.getRequestMethod(), result.getResponseString());
+        }
+    }
+
+    /**
+     * 对冲请求，首个请求超过近期耗时的指定百分位未响应时再发起一次相同请求，阻塞到任一请求成功或全部结束
+     *
+     * @param rpcEntity     请求实体
+     * @param tryCount      首个请求的尝试次数
+     * @param retryInterval 首个请求的重试间隔
+     * @param percentile 对冲等待时间取近期耗时的百分位，如 0.9
+     * @return 先返回成功结果的请求实体，可能是首个请求或对冲请求；均未成功时优先返回首个请求，均无结果时返回 null
+     */
+    public static RpcEntity requestObjectHedged(RpcEntity rpcEntity, int tryCount, int retryInterval, double percentile) {
+        RpcEntity result = RpcHedge.requestAsync(ApplicationHook.rpcBridge, rpcEntity, tryCount, retryInterval, percentile).join();
+        if (result != null) {
+            RpcResponseCache.onResponse(rpcEntity.getRequestMethod(), result.getResponseString());
+        }
+        return result;
     }
 
     public static RpcEntity requestObject(String method, String data, int tryCount, int retryInterval) {
-        return ApplicationHook.rpcBridge.requestObject(method, data, tryCount, retryInterval);
+        RpcEntity result = ApplicationHook.rpcBridge.requestObject(method, data, tryCount, retryInterval);
+        if (result != null) {
+            RpcResponseCache.onResponse(method, result.getResponseString());
+        }
+        return result;
+    }
+
+    /**
+     * 异步请求，不阻塞调用线程，空响应时 Future 以 IllegalStateException 异常完成
+     *
+     * @param rpcEntity 请求实体
+     * @return 响应字符串的 Future
+     */
+    public static CompletableFuture<String> requestStringAsync(RpcEntity rpcEntity) {
+        return requestStringAsync(rpcEntity, 3, -1);
+    }
+
+    /**
+     * 异步请求字符串响应，与同步请求一样经过响应缓存，相同的进行中请求合并为一次
+     */
+    public static CompletableFuture<String> requestStringAsync(RpcEntity rpcEntity, int tryCount, int retryInterval) {
+        String method = rpcEntity.getRequestMethod();
+        String data = rpcEntity.getRequestData();
+        String relation = rpcEntity.getRequestRelation();
+        String cached = RpcResponseCache.get(method, data, relation);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        long generation = RpcResponseCache.getGeneration(method);
+        return RpcSingleFlight.executeAsync(method, data, relation,
+                () -> requestObjectAsync(rpcEntity, tryCount, retryInterval)
+                        .thenApply(result -> checkResult(result == null ? null : result.getResponseString(), method)))
+                .thenApply(result -> {
+                    RpcResponseCache.put(method, data, relation, result, generation);
+                    return result;
+                });
+    }
+
+    public static CompletableFuture<String> requestStringAsync(String method, String data) {
+        return requestStringAsync(new RpcEntity(method, data));
+    }
+
+    /**
+     * 异步请求响应实体，返回的是请求实体本身，不经过响应缓存；修改类方法成功后仍会清除对应分组的缓存
+     */
+    public static CompletableFuture<RpcEntity> requestObjectAsync(RpcEntity rpcEntity, int tryCount, int retryInterval) {
+        return ApplicationHook.rpcBridge.requestAsync(rpcEntity, tryCount, retryInterval).whenComplete((result, throwable) -> {
+            if (result != null) {
+                RpcResponseCache.onResponse(rpcEntity.getRequestMethod(), result.getResponseString());
+            }
+        });
     }
 }
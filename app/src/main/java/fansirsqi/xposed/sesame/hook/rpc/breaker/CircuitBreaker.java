@@ -0,0 +1,155 @@
+package fansirsqi.xposed.sesame.hook.rpc.breaker;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import lombok.Getter;
+
+/**
+ * 单个接口分组的熔断器，状态依次为关闭、打开、半开。
+ * 关闭状态下连续失败达到阈值后打开，打开期间拒绝请求，到期后进入半开状态只放行一个探测请求，
+ * 探测成功则关闭，失败则重新打开，打开时长为基数加上指数退避的全抖动时长。
+ */
+public class CircuitBreaker {
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * 分组名称
+     */
+    @Getter
+    private final String family;
+    /**
+     * 连续失败多少次后打开
+     */
+    private final int failureThreshold;
+    /**
+     * 打开时长的基数（毫秒）
+     */
+    private final long baseOpenTime;
+    /**
+     * 打开时长上限（毫秒）
+     */
+    private final long maxOpenTime;
+    @Getter
+    private State state = State.CLOSED;
+    /**
+     * 连续失败次数
+     */
+    private int failureCount = 0;
+    /**
+     * 连续打开次数，用于计算退避时长
+     */
+    @Getter
+    private int tripCount = 0;
+    /**
+     * 打开状态的截止时间
+     */
+    @Getter
+    private long openUntil = 0L;
+    /**
+     * 半开状态下是否已放行探测请求
+     */
+    private boolean probing = false;
+
+    public CircuitBreaker(String family, int failureThreshold, long baseOpenTime, long maxOpenTime) {
+        this.family = family;
+        this.failureThreshold = Math.max(failureThreshold, 1);
+        this.baseOpenTime = baseOpenTime;
+        this.maxOpenTime = maxOpenTime;
+    }
+
+    /**
+     * 是否允许发起请求
+     *
+     * @param now 当前时间（毫秒）
+     * @return true 允许
+     */
+    public synchronized boolean allowRequest(long now) {
+        switch (state) {
+            case OPEN:
+                if (now < openUntil) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                return true;
+            case HALF_OPEN:
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 查看当前是否会放行请求，不改变状态，也不占用半开状态的探测名额
+     *
+     * @param now 当前时间（毫秒）
+     * @return true 可能放行，实际发起前仍需调用 {@link #allowRequest(long)}
+     */
+    public synchronized boolean peekRequest(long now) {
+        switch (state) {
+            case OPEN:
+                return now >= openUntil;
+            case HALF_OPEN:
+                return !probing;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 记录一次成功响应
+     */
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        failureCount = 0;
+        tripCount = 0;
+        probing = false;
+    }
+
+    /**
+     * 记录一次失败响应
+     *
+     * @param now 当前时间（毫秒）
+     * @return true 本次失败导致熔断器打开
+     */
+    public synchronized boolean onFailure(long now) {
+        probing = false;
+        if (state == State.OPEN) {
+            return false;
+        }
+        failureCount++;
+        if (state == State.HALF_OPEN || failureCount >= failureThreshold) {
+            tripCount++;
+            failureCount = 0;
+            state = State.OPEN;
+            openUntil = now + baseOpenTime + backoff(baseOpenTime, maxOpenTime, tripCount);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 指数退避加全抖动：在 [0, min(max, base * 2^(attempt-1))] 之间随机取值
+     *
+     * @param base    基数（毫秒）
+     * @param max     上限（毫秒）
+     * @param attempt 第几次退避，从 1 开始
+     * @return 退避时长（毫秒）
+     */
+    public static long backoff(long base, long max, int attempt) {
+        long ceiling = Math.min(base << Math.min(Math.max(attempt - 1, 0), 20), max);
+        if (ceiling <= 0) {
+            return 0;
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
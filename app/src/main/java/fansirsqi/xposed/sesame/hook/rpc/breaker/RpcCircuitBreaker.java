@@ -0,0 +1,124 @@
+package fansirsqi.xposed.sesame.hook.rpc.breaker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fansirsqi.xposed.sesame.util.Log;
+
+/**
+ * 按接口分组管理熔断器，分组为方法名去掉最后一段，如 com.alipay.antfarm.listFarmTask 属于 com.alipay.antfarm。
+ * 某个分组被限流时只暂停该分组的请求，其他分组继续请求；
+ * 只有在没有任何成功响应的情况下连续熔断次数超过阈值，才需要进入全局离线模式。
+ */
+public class RpcCircuitBreaker {
+    private static final String TAG = "RpcCircuitBreaker";
+    /**
+     * 连续失败多少次后熔断
+     */
+    private static final int FAILURE_THRESHOLD = 3;
+    /**
+     * 熔断时长基数（毫秒）
+     */
+    private static final long BASE_OPEN_TIME = 30_000L;
+    /**
+     * 熔断时长上限（毫秒）
+     */
+    private static final long MAX_OPEN_TIME = 600_000L;
+    /**
+     * 重试退避基数（毫秒）
+     */
+    private static final long BASE_RETRY_DELAY = 600L;
+    /**
+     * 重试退避上限（毫秒）
+     */
+    private static final long MAX_RETRY_DELAY = 10_000L;
+    private static final Map<String, CircuitBreaker> breakerMap = new ConcurrentHashMap<>();
+    /**
+     * 自上次成功响应以来的熔断次数
+     */
+    private static final AtomicInteger globalTripCount = new AtomicInteger(0);
+
+    /**
+     * 获取方法所属分组
+     *
+     * @param method 方法名称
+     * @return 分组名称
+     */
+    public static String getFamily(String method) {
+        int index = method.lastIndexOf('.');
+        return index > 0 ? method.substring(0, index) : method;
+    }
+
+    /**
+     * 方法所属分组是否允许请求
+     *
+     * @param method 方法名称
+     * @return true 允许
+     */
+    public static boolean allowRequest(String method) {
+        return getBreaker(method).allowRequest(System.currentTimeMillis());
+    }
+
+    /**
+     * 查看方法所属分组当前是否会放行请求，不改变熔断器状态，用于在占用限流许可前提前跳过已熔断的请求
+     *
+     * @param method 方法名称
+     * @return true 可能放行
+     */
+    public static boolean peekRequest(String method) {
+        CircuitBreaker breaker = breakerMap.get(getFamily(method));
+        return breaker == null || breaker.peekRequest(System.currentTimeMillis());
+    }
+
+    /**
+     * 记录成功响应
+     *
+     * @param method 方法名称
+     */
+    public static void onSuccess(String method) {
+        CircuitBreaker breaker = breakerMap.get(getFamily(method));
+        if (breaker != null) {
+            breaker.onSuccess();
+        }
+        globalTripCount.set(0);
+    }
+
+    /**
+     * 记录限流类失败响应
+     *
+     * @param method 方法名称
+     * @return 自上次成功响应以来的熔断次数，本次未触发熔断时返回 0
+     */
+    public static int onFailure(String method) {
+        CircuitBreaker breaker = getBreaker(method);
+        if (!breaker.onFailure(System.currentTimeMillis())) {
+            return 0;
+        }
+        Log.record(TAG, "接口分组[" + breaker.getFamily() + "]已熔断，第" + breaker.getTripCount() + "次，"
+                + (breaker.getOpenUntil() - System.currentTimeMillis()) / 1000 + "秒后重试");
+        return globalTripCount.incrementAndGet();
+    }
+
+    /**
+     * 计算重试等待时间，指数退避加全抖动
+     *
+     * @param attempt 已尝试次数，从 1 开始
+     * @return 等待时间（毫秒）
+     */
+    public static long getRetryDelay(int attempt) {
+        return CircuitBreaker.backoff(BASE_RETRY_DELAY, MAX_RETRY_DELAY, attempt);
+    }
+
+    /**
+     * 清除所有熔断器
+     */
+    public static void clear() {
+        breakerMap.clear();
+        globalTripCount.set(0);
+    }
+
+    private static CircuitBreaker getBreaker(String method) {
+        return breakerMap.computeIfAbsent(getFamily(method), family -> new CircuitBreaker(family, FAILURE_THRESHOLD, BASE_OPEN_TIME, MAX_OPEN_TIME));
+    }
+}
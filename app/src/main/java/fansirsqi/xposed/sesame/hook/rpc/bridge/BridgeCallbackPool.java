@@ -0,0 +1,164 @@
+package fansirsqi.xposed.sesame.hook.rpc.bridge;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fansirsqi.xposed.sesame.entity.RpcEntity;
+import fansirsqi.xposed.sesame.util.Log;
+
+/**
+ * BridgeCallback 代理池。
+ * 每个槽位持有一个固定的代理对象和处理器，请求时绑定到 RpcEntity，收到 sendJSONResponse 回调后解绑并归还。
+ * 未收到回调的槽位不会归还，避免迟到的回调写入后续请求；等待超时的请求会从槽位解绑，迟到的回调直接丢弃；池中槽位不足时新建。
+ */
+public class BridgeCallbackPool {
+    private static final String TAG = BridgeCallbackPool.class.getSimpleName();
+    /**
+     * 池中最多保留的空闲槽位数量
+     */
+    private static final int MAX_IDLE = 16;
+    private final ClassLoader loader;
+    private final Class<?>[] bridgeCallbackClazzArray;
+    private final Queue<Slot> idleSlots = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger(0);
+    /**
+     * 新建的槽位数量
+     */
+    private final AtomicInteger createdCount = new AtomicInteger(0);
+
+    public BridgeCallbackPool(ClassLoader loader, Class<?>[] bridgeCallbackClazzArray) {
+        this.loader = loader;
+        this.bridgeCallbackClazzArray = bridgeCallbackClazzArray;
+    }
+
+    /**
+     * 获取绑定到请求的回调代理
+     *
+     * @param rpcEntity 请求实体
+     * @param response  收到响应时需要完成的 Future，可为 null
+     * @return BridgeCallback 代理对象
+     */
+    public Object acquire(RpcEntity rpcEntity, CompletableFuture<RpcEntity> response) {
+        Slot slot = idleSlots.poll();
+        if (slot == null) {
+            slot = new Slot();
+            createdCount.incrementAndGet();
+        } else {
+            idleCount.decrementAndGet();
+        }
+        slot.bind(rpcEntity, response);
+        return slot.proxy;
+    }
+
+    /**
+     * 请求等待回调超时时解绑，之后迟到的回调不再写入请求实体，槽位也不再归还
+     *
+     * @param callback  {@link #acquire} 返回的回调代理
+     * @param rpcEntity 请求实体
+     * @return true 解绑成功，即尚未收到回调
+     */
+    public boolean detach(Object callback, RpcEntity rpcEntity) {
+        return ((Slot) Proxy.getInvocationHandler(callback)).unbind(rpcEntity);
+    }
+
+    /**
+     * 获取新建的槽位数量，稳定运行时应保持在并发请求数附近
+     *
+     * @return 槽位数量
+     */
+    public int getCreatedCount() {
+        return createdCount.get();
+    }
+
+    private void release(Slot slot) {
+        if (idleCount.incrementAndGet() <= MAX_IDLE) {
+            idleSlots.offer(slot);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * 槽位，同时作为代理对象的 InvocationHandler
+     */
+    private class Slot implements InvocationHandler {
+        private final Object proxy;
+        private RpcEntity rpcEntity;
+        private CompletableFuture<RpcEntity> response;
+
+        private Slot() {
+            proxy = Proxy.newProxyInstance(loader, bridgeCallbackClazzArray, this);
+        }
+
+        private synchronized void bind(RpcEntity rpcEntity, CompletableFuture<RpcEntity> response) {
+            this.rpcEntity = rpcEntity;
+            this.response = response;
+        }
+
+        private synchronized boolean unbind(RpcEntity rpcEntity) {
+            if (this.rpcEntity != rpcEntity) {
+                return false;
+            }
+            this.rpcEntity = null;
+            this.response = null;
+            return true;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Proxy for " + bridgeCallbackClazzArray[0].getName();
+                case "sendJSONResponse":
+                    if (args != null && args.length == 1) {
+                        onResponse(args[0]);
+                    }
+                    return null;
+                default:
+                    return null;
+            }
+        }
+
+        private void onResponse(Object obj) {
+            RpcEntity entity;
+            CompletableFuture<RpcEntity> future;
+            synchronized (this) {
+                entity = rpcEntity;
+                future = response;
+                rpcEntity = null;
+                response = null;
+            }
+            if (entity == null) {
+                return;
+            }
+            try {
+                entity.setResponseObject(obj, FastJsonAccessor.toJSONString(obj));
+                if (!FastJsonAccessor.containsKey(obj, "success")
+                        && !FastJsonAccessor.containsKey(obj, "isSuccess")) {
+                    entity.setError();
+                    Log.error(TAG, "new rpc response | id: {} | method: {}\n args: {} |\n data: {}", entity.hashCode(), entity.getRequestMethod(),
+                            RpcPayloadLog.snippet(entity.getRequestData()), RpcPayloadLog.snippet(entity.getResponseString()));
+                }
+            } catch (Exception e) {
+                entity.setError();
+                Log.error(TAG, "new rpc response | id: " + entity.hashCode() + " | method: " + entity.getRequestMethod() +
+                        " err:");
+                Log.printStackTrace(e);
+            } finally {
+                release(this);
+                if (future != null) {
+                    future.complete(entity);
+                }
+            }
+        }
+    }
+}
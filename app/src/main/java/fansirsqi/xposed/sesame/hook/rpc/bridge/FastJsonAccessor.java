@@ -0,0 +1,147 @@
+package fansirsqi.xposed.sesame.hook.rpc.bridge;
+
+import org.json.JSONObject;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import fansirsqi.xposed.sesame.data.General;
+import fansirsqi.xposed.sesame.entity.RpcEntity;
+import fansirsqi.xposed.sesame.util.Log;
+
+/**
+ * 支付宝 fastjson 对象访问工具。
+ * 反射方法在 {@link #load(ClassLoader)} 时一次性解析并缓存；fastjson 的 JSONObject 实现了 {@link Map}，
+ * 读取字段直接按 Map 访问，不再每次按名称反射查找方法。同时兼容旧版接口返回的 org.json 对象。
+ */
+public class FastJsonAccessor {
+    private static final String TAG = FastJsonAccessor.class.getSimpleName();
+    private static volatile Class<?> jsonObjectClass;
+    /**
+     * JSONObject 无参构造，类结构不符合预期时为 null，请求数据回退为序列化后解析
+     */
+    private static volatile Constructor<?> jsonObjectConstructor;
+    private static volatile Method parseObjectMethod;
+    private static volatile Method toJSONStringMethod;
+
+    /**
+     * 解析并缓存 fastjson 方法
+     *
+     * @param loader 支付宝类加载器
+     */
+    public static void load(ClassLoader loader) throws ClassNotFoundException, NoSuchMethodException {
+        Class<?> jsonClass = loader.loadClass("com.alibaba.fastjson.JSON");
+        jsonObjectClass = loader.loadClass(General.JSON_OBJECT_NAME);
+        parseObjectMethod = jsonClass.getMethod("parseObject", String.class);
+        toJSONStringMethod = jsonClass.getMethod("toJSONString");
+        jsonObjectConstructor = null;
+        if (Map.class.isAssignableFrom(jsonObjectClass)) {
+            try {
+                jsonObjectConstructor = jsonObjectClass.getConstructor();
+            } catch (NoSuchMethodException e) {
+                Log.runtime(TAG, "JSONObject 无参构造不存在，请求数据使用字符串解析");
+            }
+        }
+    }
+
+    public static void unload() {
+        jsonObjectClass = null;
+        parseObjectMethod = null;
+        toJSONStringMethod = null;
+        jsonObjectConstructor = null;
+    }
+
+    /**
+     * 获取 fastjson JSONObject 类
+     *
+     * @return 类，未加载时为 null
+     */
+    public static Class<?> getJsonObjectClass() {
+        return jsonObjectClass;
+    }
+
+    /**
+     * 将字符串解析为 fastjson JSONObject
+     *
+     * @param json JSON 字符串
+     * @return fastjson JSONObject
+     */
+    public static Object parseObject(String json) throws Exception {
+        return parseObjectMethod.invoke(null, json);
+    }
+
+    /**
+     * 构建 rpc 请求参数对象，直接写入 fastjson JSONObject，省去 org.json 序列化再解析的过程；
+     * 直接构建失败时回退到原有的字符串解析方式，且之后不再尝试
+     *
+     * @param rpcEntity 请求实体
+     * @return fastjson JSONObject
+     */
+    @SuppressWarnings("unchecked")
+    public static Object buildRequest(RpcEntity rpcEntity) throws Exception {
+        Constructor<?> constructor = jsonObjectConstructor;
+        if (constructor != null) {
+            try {
+                Map<String, Object> request = (Map<String, Object>) constructor.newInstance();
+                rpcEntity.fillRpcFullRequestData(request);
+                return request;
+            } catch (Exception e) {
+                jsonObjectConstructor = null;
+                Log.runtime(TAG, "直接构建请求数据失败，回退为字符串解析");
+                Log.printStackTrace(TAG, e);
+            }
+        }
+        return parseObject(rpcEntity.getRpcFullRequestData());
+    }
+
+    /**
+     * 序列化为 JSON 字符串
+     *
+     * @param obj fastjson 或 org.json 对象
+     * @return JSON 字符串
+     */
+    public static String toJSONString(Object obj) throws Exception {
+        if (obj == null) {
+            return null;
+        }
+        if (obj instanceof JSONObject) {
+            return obj.toString();
+        }
+        return (String) toJSONStringMethod.invoke(obj);
+    }
+
+    /**
+     * 是否包含指定字段
+     *
+     * @param obj fastjson 或 org.json 对象
+     * @param key 字段名
+     * @return true 包含
+     */
+    public static boolean containsKey(Object obj, String key) {
+        if (obj instanceof Map) {
+            return ((Map<?, ?>) obj).containsKey(key);
+        }
+        if (obj instanceof JSONObject) {
+            return ((JSONObject) obj).has(key);
+        }
+        return false;
+    }
+
+    /**
+     * 读取字符串字段，与 fastjson 的 getString 一致，非字符串值取 toString
+     *
+     * @param obj fastjson 或 org.json 对象
+     * @param key 字段名
+     * @return 字段值，不存在时返回 null
+     */
+    public static String getString(Object obj, String key) {
+        Object value = null;
+        if (obj instanceof Map) {
+            value = ((Map<?, ?>) obj).get(key);
+        } else if (obj instanceof JSONObject) {
+            value = ((JSONObject) obj).opt(key);
+        }
+        return value == null || value == JSONObject.NULL ? null : value.toString();
+    }
+}
@@ -1,21 +1,28 @@
 package fansirsqi.xposed.sesame.hook.rpc.bridge;
 
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import de.robv.android.xposed.XposedHelpers;
 import fansirsqi.xposed.sesame.data.General;
 import fansirsqi.xposed.sesame.entity.RpcEntity;
 import fansirsqi.xposed.sesame.hook.ApplicationHook;
+import fansirsqi.xposed.sesame.hook.rpc.breaker.RpcCircuitBreaker;
+import fansirsqi.xposed.sesame.hook.rpc.clock.ServerClock;
 import fansirsqi.xposed.sesame.hook.rpc.intervallimit.RpcIntervalLimit;
+import fansirsqi.xposed.sesame.hook.rpc.replay.RpcCaptureRecorder;
+import fansirsqi.xposed.sesame.hook.rpc.stats.RpcStatistics;
 import fansirsqi.xposed.sesame.model.BaseModel;
+import fansirsqi.xposed.sesame.util.GlobalThreadPools;
 import fansirsqi.xposed.sesame.util.Log;
 import fansirsqi.xposed.sesame.util.Notify;
-import fansirsqi.xposed.sesame.util.RandomUtil;
 import fansirsqi.xposed.sesame.util.TimeUtil;
 
 /**
@@ -23,12 +30,15 @@ import fansirsqi.xposed.sesame.util.TimeUtil;
  */
 public class NewRpcBridge implements RpcBridge {
     private static final String TAG = NewRpcBridge.class.getSimpleName();
+    /**
+     * 异步请求等待回调的超时时间（毫秒）
+     */
+    private static final long RESPONSE_TIMEOUT = 30_000L;
     private ClassLoader loader;
     private Object newRpcInstance;
-    private Method parseObjectMethod;
     private Class<?>[] bridgeCallbackClazzArray;
+    private BridgeCallbackPool callbackPool;
     private Method newRpcCallMethod;
-    private final AtomicInteger maxErrorCount = new AtomicInteger(0);
     private final Integer setMaxErrorCount = BaseModel.getSetMaxErrorCount().getValue();
 
     ArrayList<String> errorMark = new ArrayList<>(Arrays.asList(
@@ -72,9 +82,10 @@ public class NewRpcBridge implements RpcBridge {
                     throw new RuntimeException("get newRpcInstance is null");
                 }
             }
-            parseObjectMethod = loader.loadClass("com.alibaba.fastjson.JSON").getMethod("parseObject", String.class);
+            FastJsonAccessor.load(loader);
             Class<?> bridgeCallbackClazz = loader.loadClass("com.alibaba.ariver.engine.api.bridge.extension.BridgeCallback");
             bridgeCallbackClazzArray = new Class[]{bridgeCallbackClazz};
+            callbackPool = new BridgeCallbackPool(loader, bridgeCallbackClazzArray);
             newRpcCallMethod = newRpcInstance.getClass().getMethod("rpc"
                     , String.class
                     , boolean.class
@@ -104,7 +115,8 @@ public class NewRpcBridge implements RpcBridge {
     public void unload() {
         newRpcCallMethod = null;
         bridgeCallbackClazzArray = null;
-        parseObjectMethod = null;
+        callbackPool = null;
+        FastJsonAccessor.unload();
         newRpcInstance = null;
         loader = null;
     }
@@ -126,103 +138,62 @@ public class NewRpcBridge implements RpcBridge {
             int count = 0;
             do {
                 count++;
+                if (dropExpired(rpcEntity, System.currentTimeMillis())) {
+                    return null;
+                }
+                // 先查看熔断器，已熔断的请求不占用任何一级限流令牌
+                if (!RpcCircuitBreaker.peekRequest(rpcEntity.getRequestMethod())) {
+                    Log.runtime(TAG, "接口分组已熔断，跳过请求：" + rpcEntity.getRequestMethod());
+                    return null;
+                }
+                // 拿到限流许可后再向熔断器申请放行，放行后的每个出口都会回报成功或失败，半开状态的探测不会悬空
+                long wait = RpcIntervalLimit.enterIntervalLimit(rpcEntity.getRequestMethod(), rpcEntity.getLane(), rpcEntity.getDeadline());
+                if (wait == RpcIntervalLimit.EXPIRED) {
+                    dropExpired(rpcEntity, Long.MAX_VALUE);
+                    return null;
+                }
+                if (!RpcCircuitBreaker.allowRequest(rpcEntity.getRequestMethod())) {
+                    Log.runtime(TAG, "接口分组已熔断，跳过请求：" + rpcEntity.getRequestMethod());
+                    return null;
+                }
+                long startTime = 0;
                 try {
-                    RpcIntervalLimit.enterIntervalLimit(rpcEntity.getRequestMethod());
-                    newRpcCallMethod.invoke(
-                            newRpcInstance, rpcEntity.getRequestMethod(), false, false, "json", parseObjectMethod.invoke(null,
-                                    rpcEntity.getRpcFullRequestData()), "", null, true, false, 0, false, "", null, null, null, Proxy.newProxyInstance(loader,
-                                    bridgeCallbackClazzArray, (proxy, innerMethod, args) -> {
-                                        if ("equals".equals(innerMethod.getName())) {
-                                            return proxy == args[0];
-                                        }
-                                        if ("hashCode".equals(innerMethod.getName())) {
-                                            return System.identityHashCode(proxy);
-                                        }
-                                        if ("toString".equals(innerMethod.getName())) {
-                                            return "Proxy for " + bridgeCallbackClazzArray[0].getName();
-                                        }
-                                        if (args != null && args.length == 1 && "sendJSONResponse".equals(innerMethod.getName())) {
-                                            try {
-                                                Object obj = args[0];
-                                                rpcEntity.setResponseObject(obj, (String) XposedHelpers.callMethod(obj, "toJSONString"));
-                                                if (!(Boolean) XposedHelpers.callMethod(obj, "containsKey", "success")
-                                                        && !(Boolean) XposedHelpers.callMethod(obj, "containsKey", "isSuccess")) {
-                                                    rpcEntity.setError();
-                                                    Log.error(TAG, "new rpc response | id: " + rpcEntity.hashCode() + " | method: " + rpcEntity.getRequestMethod() + "\n " +
-                                                            "args: " + rpcEntity.getRequestData() + " |\n data: " + rpcEntity.getResponseString());
-                                                }
-                                            } catch (Exception e) {
-                                                rpcEntity.setError();
-                                                Log.error(TAG, "new rpc response | id: " + rpcEntity.hashCode() + " | method: " + rpcEntity.getRequestMethod() +
-                                                        " err:");
-                                                Log.printStackTrace(e);
-                                            }
-                                        }
-                                        return null;
-                                    })
-                    );
+                    RpcStatistics.recordLaneWait(rpcEntity.getLane(), wait);
+                    startTime = System.currentTimeMillis();
+                    Object callback = invokeRpc(rpcEntity, null);
                     if (!rpcEntity.getHasResult()) {
-                        return null;
+                        // 调用返回时仍未回调，解绑后迟到的回调不再写入本次请求
+                        callbackPool.detach(callback, rpcEntity);
                     }
-                    if (!rpcEntity.getHasError()) {
+                    long endTime = System.currentTimeMillis();
+                    RpcStatistics.recordAttempt(rpcEntity.getRequestMethod(), endTime - startTime, wait, count > 1);
+                    ServerClock.record(rpcEntity.getResponseObject(), startTime, endTime);
+                    capture(rpcEntity, startTime);
+                    ResponseState state = checkResponse(rpcEntity);
+                    if (state == ResponseState.RESULT) {
                         return rpcEntity;
                     }
-                    try {
-                        String errorCode = (String) XposedHelpers.callMethod(rpcEntity.getResponseObject(), "getString", "error");
-                        String errorMessage = (String) XposedHelpers.callMethod(rpcEntity.getResponseObject(), "getString", "errorMessage");
-                        String response = rpcEntity.getResponseString();
-                        String methodName = rpcEntity.getRequestMethod();
-
-                        if (errorMark.contains(errorCode) || errorStringMark.contains(errorMessage)) {
-                            int currentErrorCount = maxErrorCount.incrementAndGet();
-                            if (!ApplicationHook.isOffline()) {
-                                if (currentErrorCount > setMaxErrorCount) {
-                                    ApplicationHook.setOffline(true);
-                                    Notify.updateStatusText("网络连接异常，已进入离线模式");
-                                    if (BaseModel.getErrNotify().getValue()) {
-                                        Notify.sendErrorNotification(TimeUtil.getTimeStr() + " | 网络异常次数超过阈值[" + setMaxErrorCount + "]", response);
-                                    }
-                                }
-                                if (BaseModel.getErrNotify().getValue()) {
-                                    Notify.sendErrorNotification(TimeUtil.getTimeStr() + " | 网络异常: " + methodName, response);
-                                }
-                                if (BaseModel.getTimeoutRestart().getValue()) {
-                                    Log.record(TAG, "尝试重新登录");
-                                    ApplicationHook.reLoginByBroadcast();
-                                }
-                            }
-                            return null;
-                        }
-                        return rpcEntity;
-                    } catch (Exception e) {
-                        Log.error(TAG, "new rpc response | id: " + rpcEntity.hashCode() + " | method: " + rpcEntity.getRequestMethod() + " get err:");
-                        Log.printStackTrace(e);
-                    }
-                    if (retryInterval < 0) {
-                        try {
-                            Thread.sleep(600 + RandomUtil.delay());
-                        } catch (InterruptedException e) {
-                            Log.printStackTrace(e);
-                        }
-                    } else if (retryInterval > 0) {
-                        try {
-                            Thread.sleep(retryInterval);
-                        } catch (InterruptedException e) {
-                            Log.printStackTrace(e);
-                        }
+                    if (state == ResponseState.NO_RESULT) {
+                        return null;
                     }
                 } catch (Throwable t) {
+                    RpcCircuitBreaker.onFailure(rpcEntity.getRequestMethod());
+                    if (startTime > 0) {
+                        RpcStatistics.recordAttempt(rpcEntity.getRequestMethod(), System.currentTimeMillis() - startTime, wait, count > 1);
+                    }
+                    RpcStatistics.recordError(rpcEntity.getRequestMethod(), t.getClass().getSimpleName());
                     Log.error(TAG, "new rpc request | id: " + rpcEntity.hashCode() + " | method: " + rpcEntity.getRequestMethod() + " err:");
                     Log.printStackTrace(t);
-                    if (retryInterval < 0) {
-                        try {
-                            Thread.sleep(600 + RandomUtil.delay());
-                        } catch (InterruptedException e) {
-                            Log.printStackTrace(e);
-                        }
-                    } else if (retryInterval > 0) {
+                }
+                if (count < tryCount) {
+                    long delay = getRetryDelay(retryInterval, count);
+                    // 等待后已超过截止时间的重试不再发起
+                    if (dropExpired(rpcEntity, System.currentTimeMillis() + delay)) {
+                        return null;
+                    }
+                    if (delay > 0) {
                         try {
-                            Thread.sleep(retryInterval);
+                            Thread.sleep(delay);
                         } catch (InterruptedException e) {
                             Log.printStackTrace(e);
                         }
@@ -231,7 +202,251 @@ public class NewRpcBridge implements RpcBridge {
             } while (count < tryCount);
             return null;
         } finally {
-            Log.system(TAG, "New RPC\n方法: " + rpcEntity.getRequestMethod() + "\n参数: " + rpcEntity.getRequestData() + "\n数据: " + rpcEntity.getResponseString() + "\n");
+            RpcPayloadLog.system(TAG, "New RPC", rpcEntity);
+        }
+    }
+
+    /**
+     * 异步请求，响应由 BridgeCallback 回调完成，重试通过调度器延迟组合，不占用等待线程
+     */
+    @Override
+    public CompletableFuture<RpcEntity> requestAsync(RpcEntity rpcEntity, int tryCount, int retryInterval) {
+        if (ApplicationHook.isOffline()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return attemptAsync(rpcEntity, 1, tryCount, retryInterval)
+                .whenComplete((result, throwable) -> RpcPayloadLog.system(TAG, "New RPC(async)", rpcEntity));
+    }
+
+    /**
+     * 发起一次异步尝试，失败时按重试间隔延迟后组合下一次尝试
+     *
+     * @param rpcEntity     请求实体
+     * @param count         当前尝试次数，从 1 开始
+     * @param tryCount      最大尝试次数
+     * @param retryInterval 重试间隔
+     * @return 响应实体的 Future
+     */
+    private CompletableFuture<RpcEntity> attemptAsync(RpcEntity rpcEntity, int count, int tryCount, int retryInterval) {
+        if (dropExpired(rpcEntity, System.currentTimeMillis())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!RpcCircuitBreaker.peekRequest(rpcEntity.getRequestMethod())) {
+            // 已熔断的请求不占用任何一级限流令牌
+            Log.runtime(TAG, "接口分组已熔断，跳过请求：" + rpcEntity.getRequestMethod());
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<RpcEntity> response = new CompletableFuture<>();
+        // 按通道等待限流许可，等待交给调度器，不占用线程睡眠
+        AtomicLong wait = new AtomicLong(0L);
+        AtomicLong startTime = new AtomicLong(0L);
+        // 熔断器状态：0 未询问（限流已判定过期），1 已放行，-1 已熔断
+        AtomicInteger breaker = new AtomicInteger(0);
+        RpcIntervalLimit.enterIntervalLimitAsync(rpcEntity.getRequestMethod(), rpcEntity.getLane(), rpcEntity.getDeadline()).thenAcceptAsync(permitWait -> {
+            if (permitWait == RpcIntervalLimit.EXPIRED) {
+                response.complete(null);
+                return;
+            }
+            // 拿到限流许可后再向熔断器申请放行，放行后的每个出口都会回报成功或失败
+            if (!RpcCircuitBreaker.allowRequest(rpcEntity.getRequestMethod())) {
+                breaker.set(-1);
+                response.complete(null);
+                return;
+            }
+            breaker.set(1);
+            wait.set(permitWait);
+            RpcStatistics.recordLaneWait(rpcEntity.getLane(), permitWait);
+            BridgeCallbackPool pool = callbackPool;
+            Object callback;
+            try {
+                startTime.set(System.currentTimeMillis());
+                callback = invokeRpc(rpcEntity, response);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+            if (!response.isDone()) {
+                // 超时后先解绑回调再完成，迟到的响应不会写入调用方或重试正在使用的请求实体
+                GlobalThreadPools.getRpcScheduler().schedule(() -> {
+                    if (pool.detach(callback, rpcEntity)) {
+                        response.complete(rpcEntity);
+                    }
+                }, RESPONSE_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+        }, GlobalThreadPools.getRpcExecutor()).whenComplete((v, t) -> {
+            if (t != null) {
+                response.completeExceptionally(t);
+            }
+        });
+        return response.handle((entity, throwable) -> {
+            if (startTime.get() > 0) {
+                long endTime = System.currentTimeMillis();
+                RpcStatistics.recordAttempt(rpcEntity.getRequestMethod(), endTime - startTime.get(), wait.get(), count > 1);
+                ServerClock.record(rpcEntity.getResponseObject(), startTime.get(), endTime);
+                capture(rpcEntity, startTime.get());
+            }
+            if (throwable != null) {
+                if (breaker.get() == 1) {
+                    RpcCircuitBreaker.onFailure(rpcEntity.getRequestMethod());
+                }
+                RpcStatistics.recordError(rpcEntity.getRequestMethod(), throwable.getClass().getSimpleName());
+                Log.error(TAG, "new rpc async request | id: " + rpcEntity.hashCode() + " | method: " + rpcEntity.getRequestMethod() + " err:");
+                Log.printStackTrace(throwable);
+                return ResponseState.RETRY;
+            }
+            if (breaker.get() == -1) {
+                Log.runtime(TAG, "接口分组已熔断，跳过请求：" + rpcEntity.getRequestMethod());
+                return ResponseState.NO_RESULT;
+            }
+            if (breaker.get() == 0) {
+                // 截止时间前未获得限流许可，请求没有发出
+                dropExpired(rpcEntity, Long.MAX_VALUE);
+                return ResponseState.NO_RESULT;
+            }
+            return checkResponse(rpcEntity);
+        }).thenCompose(state -> {
+            if (state == ResponseState.RESULT) {
+                return CompletableFuture.completedFuture(rpcEntity);
+            }
+            if (state == ResponseState.RETRY && count < tryCount && !ApplicationHook.isOffline()) {
+                long delay = getRetryDelay(retryInterval, count);
+                if (dropExpired(rpcEntity, System.currentTimeMillis() + delay)) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                CompletableFuture<Void> retry = new CompletableFuture<>();
+                GlobalThreadPools.getRpcScheduler().schedule(() -> retry.complete(null), delay, TimeUnit.MILLISECONDS);
+                return retry.thenComposeAsync(v -> attemptAsync(rpcEntity, count + 1, tryCount, retryInterval), GlobalThreadPools.getRpcExecutor());
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * 请求在指定时间已超过截止时间时记录丢弃
+     *
+     * @param rpcEntity 请求实体
+     * @param time      请求将要发出的时间（毫秒），传入 {@link Long#MAX_VALUE} 表示限流已判定过期
+     * @return true 已丢弃
+     */
+    private static boolean dropExpired(RpcEntity rpcEntity, long time) {
+        if (!rpcEntity.isExpired(time)) {
+            return false;
+        }
+        RpcStatistics.recordExpired(rpcEntity.getRequestMethod());
+        Log.runtime(TAG, "请求已超过截止时间，丢弃：" + rpcEntity.getRequestMethod());
+        return true;
+    }
+
+    /**
+     * 调用 RpcBridgeExtension.rpc，响应通过 BridgeCallback 写回请求实体
+     *
+     * @param rpcEntity 请求实体
+     * @param response  收到响应时需要完成的 Future，同步调用时为 null
+     * @return 本次请求绑定的回调代理，用于超时解绑
+     */
+    private Object invokeRpc(RpcEntity rpcEntity, CompletableFuture<RpcEntity> response) throws Exception {
+        Object callback = callbackPool.acquire(rpcEntity, response);
+        newRpcCallMethod.invoke(
+                newRpcInstance, rpcEntity.getRequestMethod(), false, false, "json", FastJsonAccessor.buildRequest(rpcEntity), "", null, true, false, 0, false, "", null, null, null, callback
+        );
+        return callback;
+    }
+
+    /**
+     * 检查响应结果并回报熔断器，网络类错误码会触发异常通知、离线和重新登录。
+     * 无响应（含等待超时）和解析异常都按失败回报，保证半开状态的探测请求一定有结果
+     *
+     * @param rpcEntity 请求实体
+     * @return 响应状态
+     */
+    private ResponseState checkResponse(RpcEntity rpcEntity) {
+        if (!rpcEntity.getHasResult()) {
+            RpcCircuitBreaker.onFailure(rpcEntity.getRequestMethod());
+            RpcStatistics.recordError(rpcEntity.getRequestMethod(), "noResult");
+            return ResponseState.NO_RESULT;
         }
+        String methodName = rpcEntity.getRequestMethod();
+        if (!rpcEntity.getHasError()) {
+            RpcCircuitBreaker.onSuccess(methodName);
+            return ResponseState.RESULT;
+        }
+        try {
+            String errorCode = FastJsonAccessor.getString(rpcEntity.getResponseObject(), "error");
+            String errorMessage = FastJsonAccessor.getString(rpcEntity.getResponseObject(), "errorMessage");
+            String response = rpcEntity.getResponseString();
+            RpcStatistics.recordError(methodName, errorCode != null ? errorCode : errorMessage);
+
+            if (errorMark.contains(errorCode) || errorStringMark.contains(errorMessage)) {
+                int tripCount = RpcCircuitBreaker.onFailure(methodName);
+                if (tripCount > 0 && !ApplicationHook.isOffline()) {
+                    if (BaseModel.getErrNotify().getValue()) {
+                        Notify.sendErrorNotification(TimeUtil.getTimeStr() + " | 接口限流熔断: " + RpcCircuitBreaker.getFamily(methodName), response);
+                    }
+                    // 各分组连续熔断且期间没有任何成功响应，才进入离线模式
+                    if (tripCount > setMaxErrorCount) {
+                        ApplicationHook.setOffline(true);
+                        Notify.updateStatusText("网络连接异常，已进入离线模式");
+                        if (BaseModel.getErrNotify().getValue()) {
+                            Notify.sendErrorNotification(TimeUtil.getTimeStr() + " | 网络异常次数超过阈值[" + setMaxErrorCount + "]", response);
+                        }
+                        if (BaseModel.getTimeoutRestart().getValue()) {
+                            Log.record(TAG, "尝试重新登录");
+                            ApplicationHook.reLoginByBroadcast();
+                        }
+                    }
+                }
+                return ResponseState.NO_RESULT;
+            }
+            RpcCircuitBreaker.onSuccess(methodName);
+            return ResponseState.RESULT;
+        } catch (Exception e) {
+            RpcCircuitBreaker.onFailure(methodName);
+            Log.error(TAG, "new rpc response | id: " + rpcEntity.hashCode() + " | method: " + rpcEntity.getRequestMethod() + " get err:");
+            Log.printStackTrace(e);
+        }
+        return ResponseState.RETRY;
+    }
+
+    /**
+     * 抓包调试模式下将请求与响应写入二进制抓包，供回放使用
+     *
+     * @param rpcEntity 请求实体
+     * @param startTime 请求开始时间
+     */
+    private static void capture(RpcEntity rpcEntity, long startTime) {
+        if (rpcEntity.getHasResult() && BaseModel.getDebugMode().getValue()) {
+            RpcCaptureRecorder.record(startTime, System.currentTimeMillis() - startTime, rpcEntity.getRequestMethod(), rpcEntity.getRequestData(), rpcEntity.getResponseString());
+        }
+    }
+
+    /**
+     * 获取重试等待时间
+     *
+     * @param retryInterval 重试间隔，小于 0 时按指数退避加全抖动计算
+     * @param attempt       已尝试次数，从 1 开始
+     * @return 等待毫秒数
+     */
+    private static long getRetryDelay(int retryInterval, int attempt) {
+        if (retryInterval < 0) {
+            return RpcCircuitBreaker.getRetryDelay(attempt);
+        }
+        return retryInterval;
+    }
+
+    /**
+     * 响应状态
+     */
+    private enum ResponseState {
+        /**
+         * 返回响应实体
+         */
+        RESULT,
+        /**
+         * 无结果或不可重试的错误，返回 null
+         */
+        NO_RESULT,
+        /**
+         * 可重试
+         */
+        RETRY
     }
 }
@@ -10,7 +10,9 @@ import fansirsqi.xposed.sesame.data.General;
 import fansirsqi.xposed.sesame.data.RuntimeInfo;
 import fansirsqi.xposed.sesame.entity.RpcEntity;
 import fansirsqi.xposed.sesame.hook.ApplicationHook;
+import fansirsqi.xposed.sesame.hook.rpc.clock.ServerClock;
 import fansirsqi.xposed.sesame.hook.rpc.intervallimit.RpcIntervalLimit;
+import fansirsqi.xposed.sesame.hook.rpc.stats.RpcStatistics;
 import fansirsqi.xposed.sesame.model.BaseModel;
 import fansirsqi.xposed.sesame.util.Log;
 import fansirsqi.xposed.sesame.util.Notify;
@@ -58,6 +60,7 @@ public class OldRpcBridge implements RpcBridge {
                         boolean.class, loader.loadClass(General.JSON_OBJECT_NAME), String.class,
                         boolean.class, h5PageClazz, int.class, String.class, boolean.class, int.class, String.class);
                 getResponseMethod = responseClass.getMethod("getResponse");
+                FastJsonAccessor.load(loader);
                 Log.runtime(TAG, "RPC 调用方法加载成功");
             } catch (Exception e) {
                 Log.runtime(TAG, "加载 RPC 调用方法时出错：");
@@ -68,6 +71,7 @@ public class OldRpcBridge implements RpcBridge {
     @Override
     public void unload() {
         getResponseMethod = null; // 清空响应方法
+        FastJsonAccessor.unload(); // 清空 fastjson 方法缓存
         rpcCallMethod = null; // 清空调用方法
         h5PageClazz = null; // 清空 H5 页面类
         loader = null; // 清空类加载器
@@ -93,11 +97,26 @@ public class OldRpcBridge implements RpcBridge {
         String method = rpcEntity.getRequestMethod(); // 获取请求方法
         String args = rpcEntity.getRequestData(); // 获取请求参数
         for (int count = 0; count < tryCount; count++) {
+            if (rpcEntity.isExpired(System.currentTimeMillis())) {
+                handleExpired(method); // 已超过截止时间，不再发起或重试
+                return null;
+            }
             try {
-                RpcIntervalLimit.enterIntervalLimit(method); // 进入 RPC 调用间隔限制
+                long wait = RpcIntervalLimit.enterIntervalLimit(method, rpcEntity.getLane(), rpcEntity.getDeadline()); // 按通道进入 RPC 调用间隔限制
+                if (wait == RpcIntervalLimit.EXPIRED) {
+                    handleExpired(method); // 截止时间前未获得许可
+                    return null;
+                }
+                RpcStatistics.recordLaneWait(rpcEntity.getLane(), wait); // 记录通道排队时间
+                long startTime = System.currentTimeMillis();
                 Object response = invokeRpcCall(method, args); // 调用 RPC 方法
-                return processResponse(rpcEntity, response, id, method, args, retryInterval); // 处理响应
+                long endTime = System.currentTimeMillis();
+                RpcStatistics.recordAttempt(method, endTime - startTime, wait, count > 0); // 记录耗时
+                RpcEntity result = processResponse(rpcEntity, response, id, method, args, retryInterval); // 处理响应
+                ServerClock.record(rpcEntity.getResponseObject(), startTime, endTime); // 记录服务器时间样本
+                return result;
             } catch (Throwable t) {
+                RpcStatistics.recordError(method, t.getClass().getSimpleName()); // 记录错误
                 handleError(rpcEntity, t, method, id, args); // 处理错误
             }
         }
@@ -143,7 +162,7 @@ public class OldRpcBridge implements RpcBridge {
         }
         if (!resultObject.optBoolean("success")) {
             rpcEntity.setError(); // 设置为错误状态
-            Log.error(TAG,"旧 RPC 响应 | id: " + id + " | method: " + method + " args: " + args + " | data: " + rpcEntity.getResponseString());
+            Log.error(TAG, "旧 RPC 响应 | id: {} | method: {} args: {} | data: {}", id, method, RpcPayloadLog.snippet(args), RpcPayloadLog.snippet(resultStr));
         }
         return rpcEntity; // 返回更新后的 RPC 实体
     }
@@ -164,6 +183,15 @@ public class OldRpcBridge implements RpcBridge {
             handleInvocationException(rpcEntity, (InvocationTargetException) t, method); // 处理调用异常
         }
     }
+    /**
+     * 处理超过截止时间而丢弃的请求。
+     *
+     * @param method 请求的方法名。
+     */
+    private void handleExpired(String method) {
+        RpcStatistics.recordExpired(method); // 记录丢弃次数
+        Log.runtime(TAG, "旧 RPC 请求已超过截止时间，丢弃：" + method);
+    }
     /**
      * 处理调用过程中的特定异常。
      *
@@ -0,0 +1,201 @@
+package fansirsqi.xposed.sesame.hook.rpc.bridge;
+
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fansirsqi.xposed.sesame.entity.RpcEntity;
+import fansirsqi.xposed.sesame.hook.rpc.intervallimit.RpcIntervalLimit;
+import fansirsqi.xposed.sesame.hook.rpc.replay.RpcCapture;
+import fansirsqi.xposed.sesame.hook.rpc.stats.RpcStatistics;
+import fansirsqi.xposed.sesame.util.GlobalThreadPools;
+import fansirsqi.xposed.sesame.util.Log;
+
+/**
+ * 回放 rpc 接口，从二进制抓包中按方法与规范化参数匹配响应，用于在普通 JVM 上离线运行任务并统计耗时与请求数。
+ * 匹配不到参数一致的记录时回退为同方法的记录，同一匹配键的多条记录按顺序轮流返回。
+ */
+public class ReplayRpcBridge implements RpcBridge {
+    private static final String TAG = ReplayRpcBridge.class.getSimpleName();
+    private final File captureFile;
+    /**
+     * 是否按抓包记录的耗时等待，否则使用固定耗时
+     */
+    private final boolean recordedLatency;
+    /**
+     * 固定耗时（毫秒）
+     */
+    private final long syntheticLatency;
+    /**
+     * 匹配键到记录偏移的列表，载入时按索引读取每条记录一次建立，请求时不再读取、过滤候选记录
+     */
+    private final Map<String, List<Long>> keyIndex = new ConcurrentHashMap<>();
+    /**
+     * 方法到记录偏移的列表，匹配键没有记录时使用
+     */
+    private final Map<String, List<Long>> methodIndex = new ConcurrentHashMap<>();
+    private final Map<Long, RpcCapture.Record> recordCache = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> cursorMap = new ConcurrentHashMap<>();
+    private final AtomicLong requestCount = new AtomicLong(0L);
+    private final AtomicLong missCount = new AtomicLong(0L);
+    private RandomAccessFile dataFile;
+
+    public ReplayRpcBridge(File captureFile, boolean recordedLatency, long syntheticLatency) {
+        this.captureFile = captureFile;
+        this.recordedLatency = recordedLatency;
+        this.syntheticLatency = syntheticLatency;
+    }
+
+    @Override
+    public RpcVersion getVersion() {
+        return RpcVersion.REPLAY;
+    }
+
+    @Override
+    public void load() throws Exception {
+        dataFile = new RandomAccessFile(captureFile, "r");
+        if (dataFile.readInt() != RpcCapture.MAGIC || dataFile.readInt() != RpcCapture.VERSION) {
+            throw new IOException("unsupported capture file: " + captureFile);
+        }
+        File indexFile = RpcCapture.getIndexFile(captureFile);
+        long entries = indexFile.length() / RpcCapture.INDEX_ENTRY_SIZE;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            for (long i = 0; i < entries; i++) {
+                long offset = in.readLong();
+                // 跳过索引中的键哈希与方法哈希，按记录内容建立精确的匹配键
+                in.skipBytes(RpcCapture.INDEX_ENTRY_SIZE - 8);
+                dataFile.seek(offset);
+                RpcCapture.Record record = RpcCapture.Record.read(dataFile);
+                String key = RpcCapture.buildKey(record.getMethod(), record.getRequestData());
+                keyIndex.computeIfAbsent(key, k -> new ArrayList<>()).add(offset);
+                methodIndex.computeIfAbsent(record.getMethod(), k -> new ArrayList<>()).add(offset);
+            }
+        }
+        Log.runtime(TAG, "载入抓包记录 " + entries + " 条：" + captureFile);
+    }
+
+    @Override
+    public void unload() {
+        try {
+            if (dataFile != null) {
+                dataFile.close();
+            }
+        } catch (IOException e) {
+            Log.printStackTrace(TAG, e);
+        }
+        dataFile = null;
+        keyIndex.clear();
+        methodIndex.clear();
+        recordCache.clear();
+        cursorMap.clear();
+        Log.runtime(TAG, "回放请求 " + requestCount.getAndSet(0) + " 次，未匹配 " + missCount.getAndSet(0) + " 次");
+    }
+
+    @Override
+    public String requestString(RpcEntity rpcEntity, int tryCount, int retryInterval) {
+        RpcEntity resRpcEntity = requestObject(rpcEntity, tryCount, retryInterval);
+        if (resRpcEntity != null) {
+            return resRpcEntity.getResponseString();
+        }
+        return null;
+    }
+
+    @Override
+    public RpcEntity requestObject(RpcEntity rpcEntity, int tryCount, int retryInterval) {
+        String method = rpcEntity.getRequestMethod();
+        long wait = RpcIntervalLimit.enterIntervalLimit(method, rpcEntity.getLane(), rpcEntity.getDeadline());
+        if (wait == RpcIntervalLimit.EXPIRED) {
+            RpcStatistics.recordExpired(method);
+            return null;
+        }
+        RpcStatistics.recordLaneWait(rpcEntity.getLane(), wait);
+        requestCount.incrementAndGet();
+        long startTime = System.currentTimeMillis();
+        try {
+            RpcCapture.Record record = find(method, rpcEntity.getRequestData());
+            if (record == null || record.getResponse() == null) {
+                missCount.incrementAndGet();
+                RpcStatistics.recordError(method, "replayMiss");
+                return null;
+            }
+            long latency = recordedLatency ? record.getLatency() : syntheticLatency;
+            if (latency > 0) {
+                GlobalThreadPools.sleep(latency);
+            }
+            JSONObject response = new JSONObject(record.getResponse());
+            rpcEntity.setResponseObject(response, record.getResponse());
+            if (!response.has("success") && !response.has("isSuccess")) {
+                rpcEntity.setError();
+            }
+            return rpcEntity;
+        } catch (Exception e) {
+            RpcStatistics.recordError(method, e.getClass().getSimpleName());
+            Log.printStackTrace(TAG, e);
+            return null;
+        } finally {
+            RpcStatistics.recordAttempt(method, System.currentTimeMillis() - startTime, wait, false);
+        }
+    }
+
+    /**
+     * 获取回放请求次数
+     *
+     * @return 请求次数
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * 获取未匹配到记录的次数
+     *
+     * @return 未匹配次数
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private RpcCapture.Record find(String method, String requestData) throws IOException {
+        String key = RpcCapture.buildKey(method, requestData);
+        RpcCapture.Record record = next(key, keyIndex.get(key));
+        if (record == null) {
+            record = next(method, methodIndex.get(method));
+        }
+        return record;
+    }
+
+    /**
+     * 从匹配的记录中按顺序轮流取出一条
+     */
+    private RpcCapture.Record next(String cursorKey, List<Long> offsets) throws IOException {
+        if (offsets == null || offsets.isEmpty()) {
+            return null;
+        }
+        int cursor = cursorMap.computeIfAbsent(cursorKey, k -> new AtomicInteger(0)).getAndIncrement();
+        return read(offsets.get(Math.floorMod(cursor, offsets.size())));
+    }
+
+    private RpcCapture.Record read(long offset) throws IOException {
+        RpcCapture.Record record = recordCache.get(offset);
+        if (record != null) {
+            return record;
+        }
+        synchronized (this) {
+            dataFile.seek(offset);
+            record = RpcCapture.Record.read(dataFile);
+        }
+        recordCache.put(offset, record);
+        return record;
+    }
+}
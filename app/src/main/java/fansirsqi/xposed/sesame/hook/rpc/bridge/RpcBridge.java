@@ -1,5 +1,8 @@
 package fansirsqi.xposed.sesame.hook.rpc.bridge;
+import java.util.concurrent.CompletableFuture;
+
 import fansirsqi.xposed.sesame.entity.RpcEntity;
+import fansirsqi.xposed.sesame.util.GlobalThreadPools;
 public interface RpcBridge {
     RpcVersion getVersion();
     void load() throws Exception;
@@ -34,4 +37,21 @@ public interface RpcBridge {
     default RpcEntity requestObject(String method, String data, String relation, int tryCount, int retryInterval) {
         return requestObject(new RpcEntity(method, data, relation), tryCount, retryInterval);
     }
+
+    /**
+     * 异步请求，返回的 Future 在收到响应后完成，失败或放弃时以 null 完成。
+     * 默认实现将同步请求放到 RPC 线程池中执行，支持回调的桥接应重写此方法。
+     *
+     * @param rpcEntity     要发送的 RPC 实体
+     * @param tryCount      尝试次数
+     * @param retryInterval 重试间隔，小于 0 时使用默认随机间隔
+     * @return 响应实体的 Future
+     */
+    default CompletableFuture<RpcEntity> requestAsync(RpcEntity rpcEntity, int tryCount, int retryInterval) {
+        return CompletableFuture.supplyAsync(() -> requestObject(rpcEntity, tryCount, retryInterval), GlobalThreadPools.getRpcExecutor());
+    }
+
+    default CompletableFuture<RpcEntity> requestAsync(RpcEntity rpcEntity) {
+        return requestAsync(rpcEntity, 3, -1);
+    }
 }
@@ -0,0 +1,122 @@
+package fansirsqi.xposed.sesame.hook.rpc.bridge;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import fansirsqi.xposed.sesame.entity.RpcEntity;
+import fansirsqi.xposed.sesame.hook.rpc.intervallimit.RpcIntervalLimit;
+import fansirsqi.xposed.sesame.hook.rpc.stats.LatencyHistogram;
+import fansirsqi.xposed.sesame.hook.rpc.stats.RpcStatistics;
+import fansirsqi.xposed.sesame.util.GlobalThreadPools;
+import fansirsqi.xposed.sesame.util.Log;
+import fansirsqi.xposed.sesame.util.ResChecker;
+
+/**
+ * 对冲请求：先发起首个请求，超过该方法近期耗时的指定百分位仍未响应时，再发起一个相同的请求，取先返回的成功结果。
+ * 对冲请求只在限流令牌桶当前有空闲许可时发起，不预约后续许可；先返回的一方胜出后，
+ * 将另一方的截止时间设为当前时间，使其尚未发起的重试和限流等待直接放弃。
+ */
+public class RpcHedge {
+    private static final String TAG = RpcHedge.class.getSimpleName();
+    /**
+     * 计算百分位所需的最少样本数，样本不足时不对冲
+     */
+    private static final long MIN_SAMPLES = 20;
+    /**
+     * 对冲等待时间下限（毫秒）
+     */
+    private static final long MIN_HEDGE_DELAY = 50;
+
+    /**
+     * 发起对冲请求
+     *
+     * @param bridge        RPC 桥接
+     * @param rpcEntity     首个请求实体
+     * @param tryCount      首个请求的尝试次数，对冲请求只尝试一次
+     * @param retryInterval 首个请求的重试间隔
+     * @param percentile    对冲等待时间取近期耗时的百分位，如 0.9
+     * @return 先返回成功结果的请求实体的 Future；均未成功时为首个请求的结果（首个请求无结果时为对冲请求的结果），均无结果时以 null 完成
+     */
+    public static CompletableFuture<RpcEntity> requestAsync(RpcBridge bridge, RpcEntity rpcEntity, int tryCount, int retryInterval, double percentile) {
+        String method = rpcEntity.getRequestMethod();
+        long delay = getHedgeDelay(method, percentile);
+        CompletableFuture<RpcEntity> primary = bridge.requestAsync(rpcEntity, tryCount, retryInterval);
+        if (delay < 0) {
+            return primary;
+        }
+        CompletableFuture<RpcEntity> result = new CompletableFuture<>();
+        RpcEntity hedgeEntity = rpcEntity.copy();
+        // 首个请求与对冲请求各占一个计数，都结束且均未成功时，优先返回首个请求的结果
+        AtomicInteger pending = new AtomicInteger(2);
+        AtomicReference<RpcEntity> primaryEntity = new AtomicReference<>();
+        AtomicReference<RpcEntity> hedgeResult = new AtomicReference<>();
+        Runnable finish = () -> {
+            if (pending.decrementAndGet() == 0) {
+                RpcEntity entity = primaryEntity.get();
+                result.complete(entity != null ? entity : hedgeResult.get());
+            }
+        };
+        primary.whenComplete((entity, throwable) -> {
+            primaryEntity.set(entity);
+            if (isSuccess(entity) && result.complete(entity)) {
+                hedgeEntity.setDeadline(System.currentTimeMillis());
+            }
+            finish.run();
+        });
+        GlobalThreadPools.getRpcScheduler().schedule(() -> {
+            if (result.isDone() || !RpcIntervalLimit.isPermitAvailable(method)) {
+                finish.run();
+                return;
+            }
+            Log.runtime(TAG, "请求 {} 超过 {}ms 未响应，发起对冲请求", method, delay);
+            bridge.requestAsync(hedgeEntity, 1, 0).whenComplete((entity, throwable) -> {
+                hedgeResult.set(entity);
+                // 只有成功的响应才能胜出：首个请求可能已在服务端生效，此时对冲请求返回的业务失败不能代替它的结果
+                boolean won = isSuccess(entity) && result.complete(entity);
+                if (won) {
+                    rpcEntity.setDeadline(System.currentTimeMillis());
+                }
+                RpcStatistics.recordHedge(method, won);
+                finish.run();
+            });
+        }, delay, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    /**
+     * 请求是否返回了业务成功的响应
+     *
+     * @param rpcEntity 请求实体
+     * @return 成功返回 true
+     */
+    private static boolean isSuccess(RpcEntity rpcEntity) {
+        if (rpcEntity == null || rpcEntity.getResponseString() == null) {
+            return false;
+        }
+        try {
+            return ResChecker.checkRes(TAG, new JSONObject(rpcEntity.getResponseString()));
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 获取对冲等待时间
+     *
+     * @param method     方法名称
+     * @param percentile 百分位
+     * @return 等待时间（毫秒），样本不足时返回 -1
+     */
+    private static long getHedgeDelay(String method, double percentile) {
+        LatencyHistogram latency = RpcStatistics.getRecentLatency(method);
+        if (latency == null || latency.getCount() < MIN_SAMPLES) {
+            return -1;
+        }
+        return Math.max(latency.getPercentile(percentile), MIN_HEDGE_DELAY);
+    }
+}
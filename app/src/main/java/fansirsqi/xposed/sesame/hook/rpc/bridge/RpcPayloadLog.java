@@ -0,0 +1,69 @@
+package fansirsqi.xposed.sesame.hook.rpc.bridge;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import fansirsqi.xposed.sesame.entity.RpcEntity;
+import fansirsqi.xposed.sesame.model.BaseModel;
+import fansirsqi.xposed.sesame.util.Log;
+
+/**
+ * RPC 报文日志。
+ * 完整的请求参数和响应数据只在开启抓包或命中采样（{@link BaseModel#rpcLogSampleRate}）时拼接输出，
+ * 其余请求只记录方法名和数据长度，错误日志中的报文截断到 {@link #MAX_SNIPPET_LENGTH}。
+ */
+public class RpcPayloadLog {
+    /**
+     * 未输出完整报文时，错误日志中保留的最大字符数
+     */
+    private static final int MAX_SNIPPET_LENGTH = 512;
+    private static final AtomicLong requestCount = new AtomicLong(0L);
+
+    /**
+     * 本次请求是否输出完整报文
+     *
+     * @return true 输出完整报文
+     */
+    public static boolean isFullPayload() {
+        if (BaseModel.getDebugMode().getValue()) {
+            return true;
+        }
+        int sampleRate = BaseModel.getRpcLogSampleRate().getValue();
+        return sampleRate > 0 && requestCount.incrementAndGet() % sampleRate == 0;
+    }
+
+    /**
+     * 请求结束后写入系统日志
+     *
+     * @param TAG       日志标签
+     * @param title     标题，如 New RPC
+     * @param rpcEntity 请求实体
+     */
+    public static void system(String TAG, String title, RpcEntity rpcEntity) {
+        if (!Log.isEnabled(Log.LogType.SYSTEM)) {
+            return;
+        }
+        if (isFullPayload()) {
+            Log.system(TAG, title + "\n方法: " + rpcEntity.getRequestMethod() + "\n参数: " + rpcEntity.getRequestData() + "\n数据: " + rpcEntity.getResponseString() + "\n");
+        } else {
+            Log.system(TAG, "{} | 方法: {} | 参数长度: {} | 数据长度: {}", title, rpcEntity.getRequestMethod(),
+                    length(rpcEntity.getRequestData()), length(rpcEntity.getResponseString()));
+        }
+    }
+
+    /**
+     * 错误日志中使用的报文片段，未输出完整报文时截断
+     *
+     * @param payload 请求参数或响应数据
+     * @return 报文片段
+     */
+    public static String snippet(String payload) {
+        if (payload == null || payload.length() <= MAX_SNIPPET_LENGTH || BaseModel.getDebugMode().getValue()) {
+            return payload;
+        }
+        return payload.substring(0, MAX_SNIPPET_LENGTH) + "...(" + payload.length() + ")";
+    }
+
+    private static int length(String payload) {
+        return payload == null ? 0 : payload.length();
+    }
+}
@@ -6,6 +6,7 @@ import java.util.Map;
 public enum RpcVersion {
     OLD("OLD"),
     NEW("NEW"),
+    REPLAY("REPLAY"),
     ;
     final String code;
     RpcVersion(String code) {
@@ -0,0 +1,334 @@
+package fansirsqi.xposed.sesame.hook.rpc.cache;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fansirsqi.xposed.sesame.util.Log;
+import fansirsqi.xposed.sesame.util.maps.UserMap;
+
+/**
+ * 幂等查询 RPC 的响应缓存，按 (方法, 规范化参数, 用户) 缓存成功响应。
+ * 缓存方法与失效关系由各 *RpcCall 类在静态代码块中声明：
+ * 查询方法通过 {@link #register} 声明 TTL 和所属分组，修改类方法通过 {@link #registerMutation} 声明影响的分组，
+ * 修改类方法请求成功后清除该分组下的全部缓存。
+ * 每个分组维护失效代数，查询发出前读取代数，写入时代数已变化说明请求期间发生过失效，响应可能是修改前的数据，不再写入。
+ */
+public class RpcResponseCache {
+    private static final String TAG = "RpcResponseCache";
+    /**
+     * 缓存条目上限，超出时先清理过期条目，仍超出则全部清空
+     */
+    private static final int MAX_SIZE = 256;
+    /**
+     * 可缓存方法的配置
+     */
+    private static final Map<String, CachePolicy> policyMap = new ConcurrentHashMap<>();
+    /**
+     * 修改类方法到受影响分组的映射
+     */
+    private static final Map<String, Set<String>> mutationMap = new ConcurrentHashMap<>();
+    private static final Map<String, Entry> cacheMap = new ConcurrentHashMap<>();
+    /**
+     * 各分组的失效代数，每次失效加一
+     */
+    private static final Map<String, AtomicLong> generationMap = new ConcurrentHashMap<>();
+    /**
+     * 标记当前线程最近一次请求是否命中缓存，供需要服务器实时数据（如服务器时间）的调用方判断
+     */
+    private static final ThreadLocal<Boolean> lastHit = new ThreadLocal<>();
+    private static final AtomicLong hitCount = new AtomicLong(0L);
+    private static final AtomicLong missCount = new AtomicLong(0L);
+    private static final AtomicLong invalidateCount = new AtomicLong(0L);
+
+    /**
+     * 声明可缓存的查询方法
+     *
+     * @param method 方法名称
+     * @param ttl    缓存有效期（毫秒）
+     * @param family 所属分组，用于修改类方法成功后统一失效
+     */
+    public static void register(String method, long ttl, String family) {
+        policyMap.put(method, new CachePolicy(ttl, family));
+    }
+
+    /**
+     * 声明修改类方法，请求成功后清除受影响分组的缓存
+     *
+     * @param family  受影响的分组
+     * @param methods 修改类方法名称
+     */
+    public static void registerMutation(String family, String... methods) {
+        for (String method : methods) {
+            mutationMap.computeIfAbsent(method, k -> ConcurrentHashMap.newKeySet()).add(family);
+        }
+    }
+
+    /**
+     * 方法是否可缓存
+     *
+     * @param method 方法名称
+     * @return true 可缓存
+     */
+    public static boolean isCacheable(String method) {
+        return policyMap.containsKey(method);
+    }
+
+    /**
+     * 读取缓存
+     *
+     * @param method 方法名称
+     * @param data     请求参数
+     * @param relation 请求关联信息，可为 null
+     * @return 未过期的响应，未命中时返回 null
+     */
+    public static String get(String method, String data, String relation) {
+        CachePolicy policy = policyMap.get(method);
+        if (policy == null) {
+            lastHit.set(false);
+            return null;
+        }
+        String key = buildKey(method, data, relation);
+        Entry entry = cacheMap.get(key);
+        if (entry != null && entry.expireTime > System.currentTimeMillis()) {
+            hitCount.incrementAndGet();
+            lastHit.set(true);
+            return entry.response;
+        }
+        if (entry != null) {
+            cacheMap.remove(key, entry);
+        }
+        missCount.incrementAndGet();
+        lastHit.set(false);
+        return null;
+    }
+
+    /**
+     * 获取方法所属分组当前的失效代数，在发出请求前读取，写入缓存时传回
+     *
+     * @param method 方法名称
+     * @return 失效代数，不可缓存的方法返回 0
+     */
+    public static long getGeneration(String method) {
+        CachePolicy policy = policyMap.get(method);
+        return policy == null ? 0 : getGenerationCounter(policy.family).get();
+    }
+
+    /**
+     * 写入缓存，仅缓存业务成功的响应；请求期间所属分组发生过失效时不写入
+     *
+     * @param method     方法名称
+     * @param data       请求参数
+     * @param relation   请求关联信息，可为 null
+     * @param response   响应字符串
+     * @param generation 发出请求前通过 {@link #getGeneration} 读取的失效代数
+     */
+    public static void put(String method, String data, String relation, String response, long generation) {
+        CachePolicy policy = policyMap.get(method);
+        if (policy == null || !isSuccess(response)) {
+            return;
+        }
+        AtomicLong counter = getGenerationCounter(policy.family);
+        if (counter.get() != generation) {
+            return;
+        }
+        if (cacheMap.size() >= MAX_SIZE) {
+            evictExpired();
+        }
+        String key = buildKey(method, data, relation);
+        Entry entry = new Entry(response, policy.family, System.currentTimeMillis() + policy.ttl);
+        cacheMap.put(key, entry);
+        // 写入与失效并发时，失效可能先于写入完成，此时撤销本次写入
+        if (counter.get() != generation) {
+            cacheMap.remove(key, entry);
+        }
+    }
+
+    /**
+     * 请求完成后调用，修改类方法成功时清除受影响分组的缓存
+     *
+     * @param method   方法名称
+     * @param response 响应字符串
+     */
+    public static void onResponse(String method, String response) {
+        Set<String> families = mutationMap.get(method);
+        if (families == null || !isSuccess(response)) {
+            return;
+        }
+        for (String family : families) {
+            invalidateFamily(family);
+        }
+    }
+
+    /**
+     * 清除指定分组的缓存
+     *
+     * @param family 分组
+     */
+    public static void invalidateFamily(String family) {
+        getGenerationCounter(family).incrementAndGet();
+        Iterator<Entry> iterator = cacheMap.values().iterator();
+        while (iterator.hasNext()) {
+            if (family.equals(iterator.next().family)) {
+                iterator.remove();
+                invalidateCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 当前线程最近一次请求是否命中缓存
+     *
+     * @return true 命中
+     */
+    public static boolean isLastHit() {
+        return Boolean.TRUE.equals(lastHit.get());
+    }
+
+    public static long getHitCount() {
+        return hitCount.get();
+    }
+
+    public static long getMissCount() {
+        return missCount.get();
+    }
+
+    public static long getInvalidateCount() {
+        return invalidateCount.get();
+    }
+
+    /**
+     * 清空缓存及统计，账号切换或模块卸载时调用
+     */
+    public static void clear() {
+        cacheMap.clear();
+        Log.runtime(TAG, "缓存命中：" + hitCount.getAndSet(0) + "，未命中：" + missCount.getAndSet(0) + "，失效：" + invalidateCount.getAndSet(0)
+                + "，合并请求：" + RpcSingleFlight.getCollapsedCount());
+    }
+
+    private static AtomicLong getGenerationCounter(String family) {
+        return generationMap.computeIfAbsent(family, k -> new AtomicLong(0L));
+    }
+
+    private static void evictExpired() {
+        long now = System.currentTimeMillis();
+        cacheMap.values().removeIf(entry -> entry.expireTime <= now);
+        if (cacheMap.size() >= MAX_SIZE) {
+            cacheMap.clear();
+        }
+    }
+
+    static String buildKey(String method, String data, String relation) {
+        return UserMap.getCurrentUid() + "|" + method + "|" + (relation == null ? "" : relation) + "|" + canonicalize(data);
+    }
+
+    /**
+     * 规范化请求参数，按键名排序，保证字段顺序不同的相同请求命中同一缓存
+     *
+     * @param data 请求参数
+     * @return 规范化后的字符串，无法解析时原样返回
+     */
+    public static String canonicalize(String data) {
+        return canonicalize(data, Collections.emptySet());
+    }
+
+    /**
+     * 规范化请求参数，按键名排序并忽略指定字段（如时间戳、随机请求号）
+     *
+     * @param data        请求参数
+     * @param ignoredKeys 忽略的字段名
+     * @return 规范化后的字符串，无法解析时原样返回
+     */
+    public static String canonicalize(String data, Set<String> ignoredKeys) {
+        if (data == null) {
+            return "";
+        }
+        try {
+            StringBuilder sb = new StringBuilder(data.length());
+            appendCanonical(sb, new JSONTokener(data).nextValue(), ignoredKeys);
+            return sb.toString();
+        } catch (JSONException e) {
+            return data;
+        }
+    }
+
+    private static void appendCanonical(StringBuilder sb, Object value, Set<String> ignoredKeys) throws JSONException {
+        if (value instanceof JSONObject) {
+            JSONObject jo = (JSONObject) value;
+            Set<String> keys = new TreeSet<>();
+            Iterator<String> iterator = jo.keys();
+            while (iterator.hasNext()) {
+                keys.add(iterator.next());
+            }
+            sb.append('{');
+            for (String key : keys) {
+                if (ignoredKeys.contains(key)) {
+                    continue;
+                }
+                sb.append(JSONObject.quote(key)).append(':');
+                appendCanonical(sb, jo.get(key), ignoredKeys);
+                sb.append(',');
+            }
+            sb.append('}');
+        } else if (value instanceof JSONArray) {
+            JSONArray ja = (JSONArray) value;
+            sb.append('[');
+            for (int i = 0; i < ja.length(); i++) {
+                appendCanonical(sb, ja.get(i), ignoredKeys);
+                sb.append(',');
+            }
+            sb.append(']');
+        } else if (value instanceof String) {
+            sb.append(JSONObject.quote((String) value));
+        } else {
+            sb.append(value);
+        }
+    }
+
+    private static boolean isSuccess(String response) {
+        if (response == null || response.isEmpty()) {
+            return false;
+        }
+        try {
+            JSONObject jo = new JSONObject(response);
+            if (jo.optBoolean("success") || jo.optBoolean("isSuccess")) {
+                return true;
+            }
+            String resultCode = jo.optString("resultCode");
+            return "SUCCESS".equalsIgnoreCase(resultCode) || "100".equals(resultCode) || "200".equals(resultCode);
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+
+    private static class CachePolicy {
+        private final long ttl;
+        private final String family;
+
+        private CachePolicy(long ttl, String family) {
+            this.ttl = ttl;
+            this.family = family;
+        }
+    }
+
+    private static class Entry {
+        private final String response;
+        private final String family;
+        private final long expireTime;
+
+        private Entry(String response, String family, long expireTime) {
+            this.response = response;
+            this.family = family;
+            this.expireTime = expireTime;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package fansirsqi.xposed.sesame.hook.rpc.cache;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 相同请求合并，并发调用同一只读方法且参数、关联信息都相同时只发出一次请求，其余调用等待并共享该次响应。
+ * 需要由 *RpcCall 类通过 {@link #register} 显式声明，收取能量等写操作不得注册。
+ */
+public class RpcSingleFlight {
+    /**
+     * 允许合并的方法
+     */
+    private static final Set<String> methodSet = ConcurrentHashMap.newKeySet();
+    /**
+     * 进行中的请求
+     */
+    private static final Map<String, CompletableFuture<String>> inFlightMap = new ConcurrentHashMap<>();
+    /**
+     * 被合并的调用次数
+     */
+    private static final AtomicLong collapsedCount = new AtomicLong(0L);
+
+    /**
+     * 声明允许合并的只读方法
+     *
+     * @param methods 方法名称
+     */
+    public static void register(String... methods) {
+        for (String method : methods) {
+            methodSet.add(method);
+        }
+    }
+
+    /**
+     * 执行请求，存在相同的进行中请求时等待其结果
+     *
+     * @param method  方法名称
+     * @param data     请求参数
+     * @param relation 请求关联信息，可为 null，不同时不合并
+     * @param request  实际发起请求的逻辑
+     * @return 响应字符串
+     */
+    public static String execute(String method, String data, String relation, Supplier<String> request) {
+        if (!methodSet.contains(method)) {
+            return request.get();
+        }
+        String key = RpcResponseCache.buildKey(method, data, relation);
+        CompletableFuture<String> own = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = inFlightMap.putIfAbsent(key, own);
+        if (inFlight != null) {
+            collapsedCount.incrementAndGet();
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            String result = request.get();
+            own.complete(result);
+            return result;
+        } catch (Throwable t) {
+            own.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlightMap.remove(key, own);
+        }
+    }
+
+    /**
+     * 异步执行请求，存在相同的进行中请求时直接共享其 Future，不占用线程等待
+     *
+     * @param method   方法名称
+     * @param data     请求参数
+     * @param relation 请求关联信息，可为 null，不同时不合并
+     * @param request  实际发起异步请求的逻辑
+     * @return 响应字符串的 Future
+     */
+    public static CompletableFuture<String> executeAsync(String method, String data, String relation, Supplier<CompletableFuture<String>> request) {
+        if (!methodSet.contains(method)) {
+            return request.get();
+        }
+        String key = RpcResponseCache.buildKey(method, data, relation);
+        CompletableFuture<String> own = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = inFlightMap.putIfAbsent(key, own);
+        if (inFlight != null) {
+            collapsedCount.incrementAndGet();
+            // 返回派生的 Future，调用方取消时不影响其他共享者
+            return inFlight.thenApply(Function.identity());
+        }
+        try {
+            request.get().whenComplete((result, throwable) -> {
+                inFlightMap.remove(key, own);
+                if (throwable != null) {
+                    own.completeExceptionally(throwable);
+                } else {
+                    own.complete(result);
+                }
+            });
+        } catch (Throwable t) {
+            inFlightMap.remove(key, own);
+            own.completeExceptionally(t);
+        }
+        return own.thenApply(Function.identity());
+    }
+
+    /**
+     * 获取被合并的调用次数
+     *
+     * @return 合并次数
+     */
+    public static long getCollapsedCount() {
+        return collapsedCount.get();
+    }
+}
@@ -0,0 +1,170 @@
+package fansirsqi.xposed.sesame.hook.rpc.clock;
+
+import fansirsqi.xposed.sesame.hook.rpc.bridge.FastJsonAccessor;
+import fansirsqi.xposed.sesame.util.Log;
+
+/**
+ * 服务器时钟，由各 RPC 响应中的服务器时间戳估计本地与服务器的时间差，供所有定时任务使用。
+ * 与 NTP 的时钟过滤相同，在最近的样本中取往返耗时最短的一个计算时间差：
+ * 往返耗时越短，服务器时间戳对应的本地时间越确定，慢响应不会拉偏估计值。
+ */
+public class ServerClock {
+    private static final String TAG = ServerClock.class.getSimpleName();
+    /**
+     * 响应中携带服务器时间戳（毫秒）的字段
+     */
+    private static final String[] TIME_KEYS = {"now", "serverTime"};
+    /**
+     * 滑动窗口中保留的样本数
+     */
+    private static final int WINDOW_SIZE = 8;
+    /**
+     * 样本有效期（毫秒），过期样本不参与估计，避免本地时钟漂移后仍使用旧的时间差
+     */
+    private static final long MAX_SAMPLE_AGE = 30 * 60 * 1000L;
+    /**
+     * 与本地时间相差超过该值的时间戳视为无效（毫秒）
+     */
+    private static final long MAX_OFFSET = 24 * 60 * 60 * 1000L;
+    private static final Sample[] samples = new Sample[WINDOW_SIZE];
+    private static int nextIndex = 0;
+    /**
+     * 服务器时间减本地时间（毫秒）
+     */
+    private static volatile long offset = 0;
+    /**
+     * 时间差的误差范围（毫秒），无样本时为 -1
+     */
+    private static volatile long uncertainty = -1;
+
+    /**
+     * 从响应中读取服务器时间戳并记录样本，响应不含时间戳时忽略
+     *
+     * @param response  fastjson 或 org.json 响应对象
+     * @param startTime 请求发出时间（毫秒）
+     * @param endTime   收到响应时间（毫秒）
+     */
+    public static void record(Object response, long startTime, long endTime) {
+        if (response == null) {
+            return;
+        }
+        for (String key : TIME_KEYS) {
+            String value = FastJsonAccessor.getString(response, key);
+            if (value == null) {
+                continue;
+            }
+            try {
+                record(Long.parseLong(value), startTime, endTime);
+            } catch (NumberFormatException ignored) {
+            }
+            return;
+        }
+    }
+
+    /**
+     * 记录一次服务器时间样本
+     *
+     * @param serverTime 服务器时间戳（毫秒）
+     * @param startTime  请求发出时间（毫秒）
+     * @param endTime    收到响应时间（毫秒）
+     */
+    public static void record(long serverTime, long startTime, long endTime) {
+        long rtt = endTime - startTime;
+        // 部分接口返回的是秒级时间戳乘以 1000，误差可达 1 秒，会把偏移拉偏；无法区分来源，因此整秒的时间戳一律不作为样本。
+        // 真正的毫秒级时间戳约千分之一恰好落在整秒上，被误丢的只是少量样本，窗口内的其他样本不受影响
+        if (rtt < 0 || serverTime % 1000 == 0 || Math.abs(serverTime - endTime) > MAX_OFFSET) {
+            return;
+        }
+        synchronized (samples) {
+            samples[nextIndex] = new Sample(serverTime - (startTime + endTime) / 2, rtt, endTime);
+            nextIndex = (nextIndex + 1) % WINDOW_SIZE;
+            update(endTime);
+        }
+    }
+
+    /**
+     * 获取当前服务器时间
+     *
+     * @return 服务器时间（毫秒），无样本时为本地时间
+     */
+    public static long serverNow() {
+        return System.currentTimeMillis() + offset;
+    }
+
+    /**
+     * 将服务器时间换算为本地时间，用于按服务器时间安排本地定时任务
+     *
+     * @param serverTime 服务器时间（毫秒）
+     * @return 本地时间（毫秒）
+     */
+    public static long toLocalTime(long serverTime) {
+        return serverTime - offset;
+    }
+
+    /**
+     * 获取服务器时间减本地时间的差值
+     *
+     * @return 时间差（毫秒）
+     */
+    public static long getOffset() {
+        return offset;
+    }
+
+    /**
+     * 获取时间差的误差范围，即所选样本往返耗时的一半
+     *
+     * @return 误差范围（毫秒），无样本时为 -1
+     */
+    public static long getUncertainty() {
+        return uncertainty;
+    }
+
+    /**
+     * 清除所有样本
+     */
+    public static void clear() {
+        synchronized (samples) {
+            for (int i = 0; i < WINDOW_SIZE; i++) {
+                samples[i] = null;
+            }
+            nextIndex = 0;
+            offset = 0;
+            uncertainty = -1;
+        }
+    }
+
+    /**
+     * 在有效样本中取往返耗时最短的样本更新时间差
+     */
+    private static void update(long now) {
+        Sample best = null;
+        for (Sample sample : samples) {
+            if (sample == null || now - sample.time > MAX_SAMPLE_AGE) {
+                continue;
+            }
+            if (best == null || sample.rtt < best.rtt) {
+                best = sample;
+            }
+        }
+        if (best == null) {
+            return;
+        }
+        if (best.offset != offset) {
+            Log.runtime(TAG, "服务器时间差：{}ms，误差：±{}ms", best.offset, best.rtt / 2);
+        }
+        offset = best.offset;
+        uncertainty = best.rtt / 2;
+    }
+
+    private static class Sample {
+        private final long offset;
+        private final long rtt;
+        private final long time;
+
+        private Sample(long offset, long rtt, long time) {
+            this.offset = offset;
+            this.rtt = rtt;
+            this.time = time;
+        }
+    }
+}
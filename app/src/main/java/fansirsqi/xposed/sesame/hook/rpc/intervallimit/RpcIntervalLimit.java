@@ -1,21 +1,44 @@
 package fansirsqi.xposed.sesame.hook.rpc.intervallimit;
 import java.util.Map;
-import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
+import fansirsqi.xposed.sesame.entity.RpcLane;
 import fansirsqi.xposed.sesame.util.GlobalThreadPools;
 import fansirsqi.xposed.sesame.util.Log;
 
 /**
  * RpcIntervalLimit类用于管理不同方法的调用间隔限制，确保调用间隔不小于设定值。
- * 提供添加、更新、进入间隔限制以及清除限制的功能。
+ * 限流分为三级令牌桶：方法、方法前缀（如 alipay.antforest.）、账号全局，按顺序串联预约许可。
+ * 预约本身无锁，等待在调用线程内完成，不会让同一方法的其他线程排队等待一个正在睡眠的线程。
+ * 请求按 {@link RpcLane} 分通道：{@link RpcLane#CRITICAL} 直接预约后续许可；其他通道只使用当前空闲的许可，
+ * 且有更高优先级的请求正在等待自己也需要的令牌桶时让行，让行超过 {@link #MAX_YIELD_TIME} 后不再让行，避免饿死。
+ * 等待计数按令牌桶记录在请求当前卡住的那一级上，使用独立令牌桶的其他方法不受影响。
  */
 public class RpcIntervalLimit {
     private static final String TAG = "RpcIntervalLimit";
-    // 默认的间隔限制设置为50毫秒
-    private static final IntervalLimit DEFAULT_INTERVAL_LIMIT = new DefaultIntervalLimit(500);
-    // 存储各方法的间隔限制，使用线程安全的ConcurrentHashMap
-    private static final Map<String, IntervalLimit> intervalLimitMap = new ConcurrentHashMap<>();
+    // 未注册方法的默认间隔为500毫秒，每个方法使用独立的令牌桶
+    private static final int DEFAULT_INTERVAL = 500;
+    // 存储各方法的令牌桶，使用线程安全的ConcurrentHashMap
+    private static final Map<String, TokenBucket> intervalLimitMap = new ConcurrentHashMap<>();
+    // 存储方法前缀的令牌桶
+    private static final Map<String, TokenBucket> prefixLimitMap = new ConcurrentHashMap<>();
+    // 方法到最长匹配前缀的缓存，未匹配时缓存空字符串
+    private static final Map<String, String> prefixRouteMap = new ConcurrentHashMap<>();
+    // 账号全局令牌桶，为空时不限制
+    private static volatile TokenBucket globalLimit;
+    // 低优先级通道让行或等待空闲许可时的轮询间隔（毫秒）
+    private static final long LANE_POLL_INTERVAL = 100;
+    // 低优先级通道的最长让行时间（毫秒）
+    private static final long MAX_YIELD_TIME = 10_000;
+    /**
+     * 截止时间前无法获得许可时的返回值
+     */
+    public static final long EXPIRED = -1;
+    // 各令牌桶上各通道正在等待的请求数量，只统计当前卡在该令牌桶上的请求
+    private static final Map<TokenBucket, AtomicIntegerArray> bucketPending = new ConcurrentHashMap<>();
     /**
      * 为指定方法添加间隔限制。
      *
@@ -32,14 +55,9 @@ public class RpcIntervalLimit {
      * @param intervalLimit 自定义的间隔限制对象
      */
     public static void addIntervalLimit(String method, IntervalLimit intervalLimit) {
-        {
-            synchronized (intervalLimitMap) {
-                if (intervalLimitMap.containsKey(method)) {
-                    Log.runtime(TAG,"方法：" + method + " 间隔限制已存在");
-                    throw new IllegalArgumentException("方法：" + method + " 间隔限制已存在");
-                }
-                intervalLimitMap.put(method, intervalLimit);
-            }
+        if (intervalLimitMap.putIfAbsent(method, new TokenBucket(intervalLimit)) != null) {
+            Log.runtime(TAG,"方法：" + method + " 间隔限制已存在");
+            throw new IllegalArgumentException("方法：" + method + " 间隔限制已存在");
         }
     }
     /**
@@ -58,28 +76,333 @@ public class RpcIntervalLimit {
      * @param intervalLimit 新的自定义间隔限制对象
      */
     public static void updateIntervalLimit(String method, IntervalLimit intervalLimit) {
-        intervalLimitMap.put(method, intervalLimit);
+        TokenBucket bucket = new TokenBucket(intervalLimit);
+        replaceBucket(intervalLimitMap.put(method, bucket), bucket);
+    }
+    /**
+     * 为方法前缀添加间隔限制，所有以该前缀开头的方法共享一个令牌桶，存在多个匹配时取最长前缀。
+     *
+     * @param prefix        方法前缀，如 alipay.antforest.
+     * @param intervalLimit 间隔限制对象
+     * @param burst         允许突发的请求数量
+     */
+    public static void addPrefixIntervalLimit(String prefix, IntervalLimit intervalLimit, int burst) {
+        TokenBucket bucket = new TokenBucket(intervalLimit, burst);
+        replaceBucket(prefixLimitMap.put(prefix, bucket), bucket);
+        prefixRouteMap.clear();
     }
     /**
-     * 进入指定方法的间隔限制，确保调用间隔时间不小于设定值。
+     * 设置账号全局间隔限制，传入 null 取消全局限制。
+     *
+     * @param intervalLimit 间隔限制对象
+     * @param burst         允许突发的请求数量
+     */
+    public static void setGlobalIntervalLimit(IntervalLimit intervalLimit, int burst) {
+        TokenBucket bucket = intervalLimit == null ? null : new TokenBucket(intervalLimit, burst);
+        TokenBucket previous = globalLimit;
+        globalLimit = bucket;
+        replaceBucket(previous, bucket);
+    }
+
+    /**
+     * 令牌桶被替换后，把旧桶上的等待计数转移到新桶，旧桶不再留在计数表中；新桶为空时直接移除
+     *
+     * @param previous    被替换的令牌桶
+     * @param replacement 新令牌桶
+     */
+    private static void replaceBucket(TokenBucket previous, TokenBucket replacement) {
+        if (previous == null) {
+            return;
+        }
+        AtomicIntegerArray pending = bucketPending.remove(previous);
+        if (pending != null && replacement != null) {
+            bucketPending.putIfAbsent(replacement, pending);
+        }
+    }
+    /**
+     * 预约指定方法的许可，不阻塞。
+     *
+     * @param method 方法名称
+     * @return 许可生效前需要等待的时间（毫秒），0 表示可以立即请求
+     */
+    private static long reserve(String method) {
+        long now = System.currentTimeMillis();
+        TokenBucket[] buckets = getBuckets(method);
+        // 先取三级中最晚的空闲时间点，各级都在该时间点预约
+        long permitAt = now;
+        for (TokenBucket bucket : buckets) {
+            permitAt = Math.max(permitAt, bucket.getAvailableTime());
+        }
+        long[] reserved = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            reserved[i] = buckets[i].reserve(now, permitAt);
+            permitAt = Math.max(permitAt, reserved[i]);
+        }
+        // 并发预约使后级许可更晚时，前级预约顺延到实际请求时间，否则前级的间隔从未发生的请求时间算起
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i].postpone(reserved[i], permitAt);
+        }
+        return Math.max(permitAt - now, 0);
+    }
+    /**
+     * 进入指定方法的间隔限制，确保调用间隔时间不小于设定值，使用方法声明的通道。
      *
      * @param method 方法名称
+     * @return 实际等待的时间（毫秒）
      */
-    public static void enterIntervalLimit(String method) {
-        IntervalLimit intervalLimit;
-        intervalLimit = intervalLimitMap.getOrDefault(method, DEFAULT_INTERVAL_LIMIT);
-        synchronized (Objects.requireNonNull(intervalLimit, "间隔限制对象不能为空")) {
-            long sleep = intervalLimit.getInterval() - (System.currentTimeMillis() - intervalLimit.getTime());
-            if (sleep > 0) {
-                GlobalThreadPools.sleep(sleep);
+    public static long enterIntervalLimit(String method) {
+        return enterIntervalLimit(method, RpcLane.of(method));
+    }
+    /**
+     * 按通道进入指定方法的间隔限制，阻塞到许可生效。
+     *
+     * @param method 方法名称
+     * @param lane   优先级通道
+     * @return 实际等待的时间（毫秒），包含让行时间
+     */
+    public static long enterIntervalLimit(String method, RpcLane lane) {
+        return enterIntervalLimit(method, lane, 0);
+    }
+    /**
+     * 按通道进入指定方法的间隔限制，截止时间前拿不到许可时放弃，不占用许可。
+     *
+     * @param method   方法名称
+     * @param lane     优先级通道
+     * @param deadline 请求的绝对截止时间（毫秒），0 表示不限
+     * @return 实际等待的时间（毫秒），包含让行时间；截止时间前无法获得许可时返回 {@link #EXPIRED}
+     */
+    public static long enterIntervalLimit(String method, RpcLane lane, long deadline) {
+        long startTime = System.currentTimeMillis();
+        Waiter waiter = new Waiter(lane);
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                if (isHopeless(method, now, deadline)) {
+                    return EXPIRED;
+                }
+                boolean force = now - startTime >= MAX_YIELD_TIME || Thread.currentThread().isInterrupted();
+                long wait = tryReserve(method, lane, now, force, waiter);
+                if (wait >= 0) {
+                    if (wait > 0) {
+                        GlobalThreadPools.sleep(wait);
+                    }
+                    return System.currentTimeMillis() - startTime;
+                }
+                GlobalThreadPools.sleep(-wait);
             }
-            intervalLimit.setTime(System.currentTimeMillis());
+        } finally {
+            waiter.block(null);
         }
     }
+    /**
+     * 按通道异步进入指定方法的间隔限制，让行与等待交给调度器，不占用线程。
+     *
+     * @param method 方法名称
+     * @param lane   优先级通道
+     * @return 许可生效时完成的 Future，值为实际等待的时间（毫秒）
+     */
+    public static CompletableFuture<Long> enterIntervalLimitAsync(String method, RpcLane lane) {
+        return enterIntervalLimitAsync(method, lane, 0);
+    }
+    /**
+     * 按通道异步进入指定方法的间隔限制，截止时间前拿不到许可时放弃。
+     *
+     * @param method   方法名称
+     * @param lane     优先级通道
+     * @param deadline 请求的绝对截止时间（毫秒），0 表示不限
+     * @return 许可生效时完成的 Future，值为实际等待的时间（毫秒）；截止时间前无法获得许可时值为 {@link #EXPIRED}
+     */
+    public static CompletableFuture<Long> enterIntervalLimitAsync(String method, RpcLane lane, long deadline) {
+        CompletableFuture<Long> permit = new CompletableFuture<>();
+        Waiter waiter = new Waiter(lane);
+        permit.whenComplete((wait, throwable) -> waiter.block(null));
+        attemptAsync(method, lane, deadline, System.currentTimeMillis(), permit, waiter);
+        return permit;
+    }
+    /**
+     * 方法、前缀、全局三级令牌桶当前是否都有空闲许可，只查询不预约。
+     *
+     * @param method 方法名称
+     * @return true 立即请求无需等待
+     */
+    public static boolean isPermitAvailable(String method) {
+        return getAvailableTime(method) <= System.currentTimeMillis();
+    }
+    private static void attemptAsync(String method, RpcLane lane, long deadline, long startTime, CompletableFuture<Long> permit, Waiter waiter) {
+        try {
+            long now = System.currentTimeMillis();
+            if (isHopeless(method, now, deadline)) {
+                permit.complete(EXPIRED);
+                return;
+            }
+            long wait = tryReserve(method, lane, now, now - startTime >= MAX_YIELD_TIME, waiter);
+            if (wait == 0) {
+                permit.complete(now - startTime);
+            } else if (wait > 0) {
+                GlobalThreadPools.getRpcScheduler().schedule(() -> permit.complete(System.currentTimeMillis() - startTime), wait, TimeUnit.MILLISECONDS);
+            } else {
+                GlobalThreadPools.getRpcScheduler().schedule(() -> attemptAsync(method, lane, deadline, startTime, permit, waiter), -wait, TimeUnit.MILLISECONDS);
+            }
+        } catch (Throwable t) {
+            permit.completeExceptionally(t);
+        }
+    }
+
+    /**
+     * 按通道尝试预约许可。
+     *
+     * @param method 方法名称
+     * @param lane   优先级通道
+     * @param now    当前时间（毫秒）
+     * @param force  是否不再让行
+     * @param waiter 本次请求的等待记录
+     * @return 大于等于 0 表示已预约，值为许可生效前需要等待的时间；小于 0 表示需要让行，绝对值为下次尝试前的等待时间
+     */
+    private static long tryReserve(String method, RpcLane lane, long now, boolean force, Waiter waiter) {
+        if (lane != RpcLane.CRITICAL && !force) {
+            TokenBucket[] buckets = getBuckets(method);
+            for (TokenBucket bucket : buckets) {
+                if (hasHigherPending(bucket, lane)) {
+                    waiter.block(bucket);
+                    return -LANE_POLL_INTERVAL;
+                }
+            }
+            TokenBucket blocking = null;
+            long availableTime = now;
+            for (TokenBucket bucket : buckets) {
+                long bucketTime = bucket.getAvailableTime();
+                if (bucketTime > availableTime) {
+                    availableTime = bucketTime;
+                    blocking = bucket;
+                }
+            }
+            if (blocking != null) {
+                waiter.block(blocking);
+                return -Math.min(availableTime - now, LANE_POLL_INTERVAL);
+            }
+        }
+        waiter.block(null);
+        return reserve(method);
+    }
+
+    /**
+     * 令牌桶上是否有比指定通道优先级更高的请求在等待
+     */
+    private static boolean hasHigherPending(TokenBucket bucket, RpcLane lane) {
+        AtomicIntegerArray pending = bucketPending.get(bucket);
+        if (pending == null) {
+            return false;
+        }
+        for (int i = 0; i < lane.ordinal(); i++) {
+            if (pending.get(i) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 方法需要的令牌桶，依次为方法、前缀（如有）、全局（如有）
+     */
+    private static TokenBucket[] getBuckets(String method) {
+        TokenBucket methodBucket = getMethodBucket(method);
+        TokenBucket prefixBucket = getPrefixBucket(method);
+        TokenBucket global = globalLimit;
+        if (prefixBucket == null && global == null) {
+            return new TokenBucket[]{methodBucket};
+        }
+        if (prefixBucket == null) {
+            return new TokenBucket[]{methodBucket, global};
+        }
+        if (global == null) {
+            return new TokenBucket[]{methodBucket, prefixBucket};
+        }
+        return new TokenBucket[]{methodBucket, prefixBucket, global};
+    }
+
+    /**
+     * 截止时间已到，或最早的空闲许可晚于截止时间。令牌桶的空闲时间点只会后移，此时继续等待没有意义
+     */
+    private static boolean isHopeless(String method, long now, long deadline) {
+        return deadline > 0 && (now >= deadline || getAvailableTime(method) >= deadline);
+    }
+
+    /**
+     * 方法、前缀、全局三级令牌桶中最晚的空闲许可时间点
+     */
+    private static long getAvailableTime(String method) {
+        long availableTime = getMethodBucket(method).getAvailableTime();
+        TokenBucket prefixBucket = getPrefixBucket(method);
+        if (prefixBucket != null) {
+            availableTime = Math.max(availableTime, prefixBucket.getAvailableTime());
+        }
+        TokenBucket global = globalLimit;
+        if (global != null) {
+            availableTime = Math.max(availableTime, global.getAvailableTime());
+        }
+        return availableTime;
+    }
     /**
      * 清除所有方法的间隔限制。
      */
     public static void clearIntervalLimit() {
         intervalLimitMap.clear();
+        prefixLimitMap.clear();
+        prefixRouteMap.clear();
+        globalLimit = null;
+        bucketPending.clear();
+    }
+
+    private static TokenBucket getMethodBucket(String method) {
+        return intervalLimitMap.computeIfAbsent(method, k -> new TokenBucket(new DefaultIntervalLimit(DEFAULT_INTERVAL)));
+    }
+
+    private static TokenBucket getPrefixBucket(String method) {
+        if (prefixLimitMap.isEmpty()) {
+            return null;
+        }
+        String prefix = prefixRouteMap.get(method);
+        if (prefix == null) {
+            prefix = "";
+            for (String key : prefixLimitMap.keySet()) {
+                if (method.startsWith(key) && key.length() > prefix.length()) {
+                    prefix = key;
+                }
+            }
+            prefixRouteMap.put(method, prefix);
+        }
+        return prefix.isEmpty() ? null : prefixLimitMap.get(prefix);
+    }
+
+    /**
+     * 单个请求的等待记录，在当前卡住的令牌桶上计数，换桶或结束时转移、撤销。
+     * 记录的是计数数组而不是令牌桶，令牌桶被替换、计数转移到新桶后，已计入的等待仍能在新桶上正确撤销
+     */
+    private static final class Waiter {
+        private final int lane;
+        private AtomicIntegerArray blockedOn;
+
+        private Waiter(RpcLane lane) {
+            this.lane = lane.ordinal();
+        }
+
+        /**
+         * 记录当前卡住的令牌桶
+         *
+         * @param bucket 令牌桶，null 表示不再等待
+         */
+        private synchronized void block(TokenBucket bucket) {
+            AtomicIntegerArray pending = bucket == null ? null : bucketPending.computeIfAbsent(bucket, k -> new AtomicIntegerArray(RpcLane.values().length));
+            if (pending == blockedOn) {
+                return;
+            }
+            if (blockedOn != null) {
+                blockedOn.decrementAndGet(lane);
+            }
+            if (pending != null) {
+                pending.incrementAndGet(lane);
+            }
+            blockedOn = pending;
+        }
     }
 }
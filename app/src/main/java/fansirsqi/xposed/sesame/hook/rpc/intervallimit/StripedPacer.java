@@ -0,0 +1,55 @@
+package fansirsqi.xposed.sesame.hook.rpc.intervallimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按对象分条的间隔控制器，每个对象（如好友）独立计算间隔，互不阻塞。
+ * 与 {@link TokenBucket} 相同按预约方式发放许可：每次预约只做一次 CAS，返回许可生效的时间点，由调用方自行等待。
+ * 间隔按次传入，同一对象的收取、双击、重试可以使用不同的间隔。
+ */
+public class StripedPacer {
+    /**
+     * 对象 -> 上一个许可的生效时间（毫秒）
+     */
+    private final Map<String, AtomicLong> stripeMap = new ConcurrentHashMap<>();
+
+    /**
+     * 预约一个许可
+     *
+     * @param key      对象
+     * @param now      当前时间（毫秒）
+     * @param interval 距同一对象上一个许可的最小间隔（毫秒）
+     * @return 许可生效的时间点（毫秒）
+     */
+    public long reserve(String key, long now, long interval) {
+        AtomicLong last = stripeMap.computeIfAbsent(key, k -> new AtomicLong(0L));
+        while (true) {
+            long current = last.get();
+            long permitAt = Math.max(now, current + Math.max(interval, 0));
+            if (last.compareAndSet(current, permitAt)) {
+                return permitAt;
+            }
+        }
+    }
+
+    /**
+     * 移除空闲超过指定时间的对象
+     *
+     * @param now  当前时间（毫秒）
+     * @param idle 空闲时间（毫秒）
+     */
+    public void removeIdle(long now, long idle) {
+        stripeMap.values().removeIf(last -> now - last.get() > idle);
+    }
+
+    /**
+     * 获取对象数量
+     *
+     * @return 对象数量
+     */
+    public int size() {
+        return stripeMap.size();
+    }
+}
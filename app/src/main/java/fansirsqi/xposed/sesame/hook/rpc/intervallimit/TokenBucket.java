@@ -0,0 +1,119 @@
+package fansirsqi.xposed.sesame.hook.rpc.intervallimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+
+/**
+ * 无锁令牌桶（GCRA 实现），按预约方式发放许可。
+ * 每次预约只做一次 CAS，返回许可生效的时间点，调用方自行决定等待方式，不在锁内睡眠。
+ * 补充速率由 {@link IntervalLimit#getInterval()} 决定，因此 {@link FixedOrRangeIntervalLimit} 的随机区间会按次生效。
+ */
+public class TokenBucket {
+    /**
+     * 补充策略，每发放一个许可取一次间隔
+     */
+    @Getter
+    private final IntervalLimit refillPolicy;
+    /**
+     * 桶容量，允许突发的许可数量，为 1 时等价于原有的固定间隔
+     */
+    @Getter
+    private final int burst;
+    /**
+     * 理论到达时间（毫秒），下一个许可在 tat - (burst - 1) * interval 之后可用
+     */
+    private final AtomicLong tat = new AtomicLong(0L);
+    /**
+     * 已发放的许可数量
+     */
+    private final AtomicLong permits = new AtomicLong(0L);
+    /**
+     * 累计等待时间（毫秒）
+     */
+    private final AtomicLong waitTime = new AtomicLong(0L);
+
+    public TokenBucket(IntervalLimit refillPolicy) {
+        this(refillPolicy, 1);
+    }
+
+    public TokenBucket(IntervalLimit refillPolicy, int burst) {
+        this.refillPolicy = refillPolicy;
+        this.burst = Math.max(burst, 1);
+    }
+
+    /**
+     * 预约一个许可
+     *
+     * @param now      当前时间（毫秒）
+     * @param earliest 许可最早的生效时间（毫秒），用于串联多级令牌桶
+     * @return 许可生效的时间点（毫秒）
+     */
+    public long reserve(long now, long earliest) {
+        long interval = Math.max(refillPolicy.getInterval(), 0);
+        long tolerance = (burst - 1) * interval;
+        long start = Math.max(now, earliest);
+        while (true) {
+            long current = tat.get();
+            long permitAt = Math.max(start, current - tolerance);
+            long next = Math.max(current, permitAt) + interval;
+            if (tat.compareAndSet(current, next)) {
+                permits.incrementAndGet();
+                if (permitAt > now) {
+                    waitTime.addAndGet(permitAt - now);
+                }
+                refillPolicy.setTime(permitAt);
+                return permitAt;
+            }
+        }
+    }
+
+    /**
+     * 将已预约的许可顺延到实际生效的时间点，后续许可按顺延后的时间计算间隔，不额外计数
+     *
+     * @param reservedAt 预约时返回的许可生效时间点（毫秒）
+     * @param permitAt   许可实际生效的时间点（毫秒）
+     */
+    public void postpone(long reservedAt, long permitAt) {
+        if (permitAt <= reservedAt) {
+            return;
+        }
+        long next = permitAt + Math.max(refillPolicy.getInterval(), 0);
+        while (true) {
+            long current = tat.get();
+            if (current >= next || tat.compareAndSet(current, next)) {
+                break;
+            }
+        }
+        waitTime.addAndGet(permitAt - reservedAt);
+        refillPolicy.setTime(permitAt);
+    }
+
+    /**
+     * 获取下一个许可可用的时间点，不预约
+     *
+     * @return 时间点（毫秒），不大于当前时间表示有空闲许可
+     */
+    public long getAvailableTime() {
+        long interval = Math.max(refillPolicy.getInterval(), 0);
+        return tat.get() - (burst - 1) * interval;
+    }
+
+    /**
+     * 获取已发放的许可数量
+     *
+     * @return 许可数量
+     */
+    public long getPermits() {
+        return permits.get();
+    }
+
+    /**
+     * 获取累计等待时间
+     *
+     * @return 等待时间（毫秒）
+     */
+    public long getWaitTime() {
+        return waitTime.get();
+    }
+}
@@ -0,0 +1,142 @@
+package fansirsqi.xposed.sesame.hook.rpc.replay;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import fansirsqi.xposed.sesame.hook.rpc.cache.RpcResponseCache;
+import lombok.Getter;
+
+/**
+ * 二进制抓包格式。
+ * 数据文件 *.bin：文件头为魔数与版本号，之后依次为记录：时间戳(long)、耗时(int)、方法、参数、响应，字符串均为长度加 UTF-8 字节；
+ * 索引文件 *.idx：每条记录 16 字节，依次为记录在数据文件中的偏移(long)、匹配键哈希(int)、方法哈希(int)。
+ */
+public class RpcCapture {
+    public static final int MAGIC = 0x53525043;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+    public static final int INDEX_ENTRY_SIZE = 16;
+    /**
+     * 匹配时忽略的易变字段
+     */
+    private static final Set<String> IGNORED_KEYS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "requestId", "sToken", "timestamp", "ts", "uuid", "__apiCallStartTime", "startTime", "nonce"
+    )));
+
+    /**
+     * 生成匹配键：方法加上规范化且忽略易变字段后的参数
+     *
+     * @param method 方法名称
+     * @param data   请求参数
+     * @return 匹配键
+     */
+    public static String buildKey(String method, String data) {
+        return method + "|" + RpcResponseCache.canonicalize(data, IGNORED_KEYS);
+    }
+
+    /**
+     * 获取抓包对应的索引文件
+     *
+     * @param dataFile 数据文件
+     * @return 索引文件
+     */
+    public static File getIndexFile(File dataFile) {
+        String name = dataFile.getName();
+        int index = name.lastIndexOf('.');
+        return new File(dataFile.getParentFile(), (index > 0 ? name.substring(0, index) : name) + ".idx");
+    }
+
+    /**
+     * 按写入顺序读取抓包中的全部记录，末尾未写完整的记录忽略
+     *
+     * @param dataFile 数据文件
+     * @return 记录列表
+     * @throws IOException 文件不是抓包格式或读取失败
+     */
+    public static List<Record> readAll(File dataFile) throws IOException {
+        List<Record> records = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(dataFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("unsupported capture file: " + dataFile);
+            }
+            while (true) {
+                try {
+                    records.add(Record.read(in));
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+        return records;
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 抓包记录
+     */
+    @Getter
+    public static class Record {
+        private final long timestamp;
+        private final int latency;
+        private final String method;
+        private final String requestData;
+        private final String response;
+
+        public Record(long timestamp, int latency, String method, String requestData, String response) {
+            this.timestamp = timestamp;
+            this.latency = latency;
+            this.method = method;
+            this.requestData = requestData;
+            this.response = response;
+        }
+
+        public void write(DataOutput out) throws IOException {
+            out.writeLong(timestamp);
+            out.writeInt(latency);
+            writeString(out, method);
+            writeString(out, requestData);
+            writeString(out, response);
+        }
+
+        public static Record read(DataInput in) throws IOException {
+            long timestamp = in.readLong();
+            int latency = in.readInt();
+            String method = readString(in);
+            String requestData = readString(in);
+            String response = readString(in);
+            return new Record(timestamp, latency, method, requestData, response);
+        }
+    }
+}
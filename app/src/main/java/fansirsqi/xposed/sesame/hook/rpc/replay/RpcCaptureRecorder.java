@@ -0,0 +1,140 @@
+package fansirsqi.xposed.sesame.hook.rpc.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import fansirsqi.xposed.sesame.util.Files;
+import fansirsqi.xposed.sesame.util.Log;
+
+/**
+ * 抓包记录器，将 RPC 请求与响应写入带索引的二进制文件，供 ReplayRpcBridge 回放。
+ * 数据与索引文件各保持一个打开的输出流，每条记录写完后刷新；数据文件超过 {@link #MAX_CAPTURE_SIZE} 时
+ * 将当前抓包改名为 *.old.bin / *.old.idx（覆盖上一份）后重新开始，磁盘占用不超过两倍上限。
+ */
+public class RpcCaptureRecorder {
+    private static final String TAG = "RpcCaptureRecorder";
+    /**
+     * 单个抓包数据文件的大小上限（字节）
+     */
+    private static final long MAX_CAPTURE_SIZE = 32L * 1024 * 1024;
+    /**
+     * 当前打开的数据文件
+     */
+    private static File openFile;
+    private static DataOutputStream dataOut;
+    private static DataOutputStream indexOut;
+    /**
+     * 下一条记录在数据文件中的偏移
+     */
+    private static long offset;
+
+    /**
+     * 获取默认抓包文件
+     *
+     * @return 日志目录下的 rpc_capture.bin
+     */
+    public static File getCaptureFile() {
+        return new File(Files.LOG_DIR, "rpc_capture.bin");
+    }
+
+    /**
+     * 写入一条记录
+     *
+     * @param timestamp   请求时间
+     * @param latency     耗时（毫秒）
+     * @param method      方法名称
+     * @param requestData 请求参数
+     * @param response    响应字符串
+     */
+    public static void record(long timestamp, long latency, String method, String requestData, String response) {
+        record(getCaptureFile(), new RpcCapture.Record(timestamp, (int) Math.min(latency, Integer.MAX_VALUE), method, requestData, response));
+    }
+
+    /**
+     * 写入一条记录到指定文件
+     *
+     * @param dataFile 数据文件
+     * @param record   记录
+     */
+    public static synchronized void record(File dataFile, RpcCapture.Record record) {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+            record.write(new DataOutputStream(buffer));
+            if (!dataFile.equals(openFile) || offset + buffer.size() > MAX_CAPTURE_SIZE) {
+                open(dataFile, offset + buffer.size() > MAX_CAPTURE_SIZE && dataFile.equals(openFile));
+            }
+            dataOut.write(buffer.toByteArray());
+            indexOut.writeLong(offset);
+            indexOut.writeInt(RpcCapture.buildKey(record.getMethod(), record.getRequestData()).hashCode());
+            indexOut.writeInt(record.getMethod().hashCode());
+            dataOut.flush();
+            indexOut.flush();
+            offset += buffer.size();
+        } catch (IOException e) {
+            Log.printStackTrace(TAG, e);
+            close();
+        }
+    }
+
+    /**
+     * 关闭当前抓包文件
+     */
+    public static synchronized void close() {
+        try {
+            if (dataOut != null) {
+                dataOut.close();
+            }
+            if (indexOut != null) {
+                indexOut.close();
+            }
+        } catch (IOException e) {
+            Log.printStackTrace(TAG, e);
+        }
+        dataOut = null;
+        indexOut = null;
+        openFile = null;
+        offset = 0;
+    }
+
+    /**
+     * 打开数据文件，以追加方式续写已有抓包
+     *
+     * @param dataFile 数据文件
+     * @param rotate   是否先将已有抓包改名为 *.old 再新建
+     */
+    private static void open(File dataFile, boolean rotate) throws IOException {
+        close();
+        File indexFile = RpcCapture.getIndexFile(dataFile);
+        if (rotate || dataFile.length() >= MAX_CAPTURE_SIZE) {
+            File oldDataFile = getOldFile(dataFile);
+            File oldIndexFile = RpcCapture.getIndexFile(oldDataFile);
+            if ((oldDataFile.exists() && !oldDataFile.delete()) || (oldIndexFile.exists() && !oldIndexFile.delete())
+                    || !dataFile.renameTo(oldDataFile) || !indexFile.renameTo(oldIndexFile)) {
+                Log.runtime(TAG, "抓包文件轮转失败，重新开始：" + dataFile);
+                dataFile.delete();
+                indexFile.delete();
+            }
+        }
+        long length = dataFile.length();
+        dataOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile, true)));
+        indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, true)));
+        openFile = dataFile;
+        if (length == 0) {
+            dataOut.writeInt(RpcCapture.MAGIC);
+            dataOut.writeInt(RpcCapture.VERSION);
+            offset = RpcCapture.HEADER_SIZE;
+        } else {
+            offset = length;
+        }
+    }
+
+    private static File getOldFile(File dataFile) {
+        String name = dataFile.getName();
+        int index = name.lastIndexOf('.');
+        return new File(dataFile.getParentFile(), index > 0 ? name.substring(0, index) + ".old" + name.substring(index) : name + ".old");
+    }
+}
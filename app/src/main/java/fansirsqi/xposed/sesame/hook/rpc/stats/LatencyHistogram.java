@@ -0,0 +1,111 @@
+package fansirsqi.xposed.sesame.hook.rpc.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定内存的耗时直方图，桶边界按毫秒近似对数分布，记录无锁。
+ * 分位数取所在桶的上边界，最大值单独记录。
+ */
+public class LatencyHistogram {
+    /**
+     * 各桶上边界（毫秒，含），最后一个桶收纳超出上限的值
+     */
+    private static final long[] BOUNDS = {
+            5, 10, 20, 30, 50, 75, 100, 150, 200, 300, 500, 750,
+            1000, 1500, 2000, 3000, 5000, 10000, 30000
+    };
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1);
+    private final AtomicLong count = new AtomicLong(0L);
+    private final AtomicLong sum = new AtomicLong(0L);
+    private final AtomicLong max = new AtomicLong(0L);
+
+    /**
+     * 记录一次耗时
+     *
+     * @param millis 耗时（毫秒）
+     */
+    public void record(long millis) {
+        if (millis < 0) {
+            millis = 0;
+        }
+        counts.incrementAndGet(indexOf(millis));
+        count.incrementAndGet();
+        sum.addAndGet(millis);
+        long current;
+        while (millis > (current = max.get())) {
+            if (max.compareAndSet(current, millis)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 获取分位数
+     *
+     * @param percentile 分位，取值 (0, 1]
+     * @return 分位数（毫秒），无数据时为 0
+     */
+    public long getPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * percentile);
+        long cumulative = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            cumulative += counts.get(i);
+            if (cumulative >= target) {
+                return i < BOUNDS.length ? Math.min(BOUNDS[i], max.get()) : max.get();
+            }
+        }
+        return max.get();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * 获取平均值
+     *
+     * @return 平均耗时（毫秒）
+     */
+    public long getMean() {
+        long total = count.get();
+        return total == 0 ? 0 : sum.get() / total;
+    }
+
+    /**
+     * 合并两个直方图，生成新的直方图，不修改原直方图
+     *
+     * @param first  直方图
+     * @param second 直方图
+     * @return 合并后的直方图
+     */
+    public static LatencyHistogram merge(LatencyHistogram first, LatencyHistogram second) {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (LatencyHistogram histogram : new LatencyHistogram[]{first, second}) {
+            for (int i = 0; i < histogram.counts.length(); i++) {
+                merged.counts.addAndGet(i, histogram.counts.get(i));
+            }
+            merged.count.addAndGet(histogram.count.get());
+            merged.sum.addAndGet(histogram.sum.get());
+            merged.max.set(Math.max(merged.max.get(), histogram.max.get()));
+        }
+        return merged;
+    }
+
+    private static int indexOf(long millis) {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            if (millis <= BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BOUNDS.length;
+    }
+}
@@ -0,0 +1,260 @@
+package fansirsqi.xposed.sesame.hook.rpc.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fansirsqi.xposed.sesame.entity.RpcLane;
+import fansirsqi.xposed.sesame.util.Files;
+import fansirsqi.xposed.sesame.util.GlobalThreadPools;
+import fansirsqi.xposed.sesame.util.Log;
+import fansirsqi.xposed.sesame.util.TimeUtil;
+
+/**
+ * RPC 调用统计，按方法记录耗时分布、尝试与重试次数、超过截止时间被丢弃的次数、对冲请求次数与胜出次数、错误码和限流等待时间，按优先级通道记录排队等待时间分布。
+ * 定时将快照写入日志目录下的 rpc_stats.log，可在模块界面查看，用于按账号调整查询与收取间隔。
+ * 耗时另按快照周期分窗记录，{@link #getRecentLatency} 只包含最近两个窗口，慢速时段过后能够恢复。
+ */
+public class RpcStatistics {
+    private static final String TAG = "RpcStatistics";
+    /**
+     * 快照写入周期（分钟）
+     */
+    private static final long SNAPSHOT_PERIOD = 5;
+    private static final Map<String, MethodStats> statsMap = new ConcurrentHashMap<>();
+    private static final Map<RpcLane, LatencyHistogram> laneWaitMap = new ConcurrentHashMap<>();
+    private static volatile ScheduledFuture<?> snapshotFuture;
+
+    /**
+     * 记录一次请求尝试
+     *
+     * @param method      方法名称
+     * @param latency     请求耗时（毫秒），不含限流等待
+     * @param limiterWait 限流等待时间（毫秒）
+     * @param retry       是否为重试
+     */
+    public static void recordAttempt(String method, long latency, long limiterWait, boolean retry) {
+        MethodStats stats = getStats(method);
+        stats.attempts.incrementAndGet();
+        if (retry) {
+            stats.retries.incrementAndGet();
+        }
+        stats.limiterWait.addAndGet(limiterWait);
+        stats.latency.record(latency);
+        stats.recentLatency.record(latency);
+    }
+
+    /**
+     * 记录一次通道排队等待
+     *
+     * @param lane 优先级通道
+     * @param wait 限流排队等待时间（毫秒），包含让行时间
+     */
+    public static void recordLaneWait(RpcLane lane, long wait) {
+        laneWaitMap.computeIfAbsent(lane, k -> new LatencyHistogram()).record(wait);
+    }
+
+    /**
+     * 获取指定通道的排队等待直方图
+     *
+     * @param lane 优先级通道
+     * @return 直方图，未请求过时为 null
+     */
+    public static LatencyHistogram getLaneWait(RpcLane lane) {
+        return laneWaitMap.get(lane);
+    }
+
+    /**
+     * 记录一次因超过截止时间而丢弃的请求或重试
+     *
+     * @param method 方法名称
+     */
+    public static void recordExpired(String method) {
+        getStats(method).expired.incrementAndGet();
+    }
+
+    /**
+     * 记录一次对冲请求
+     *
+     * @param method 方法名称
+     * @param won    对冲请求是否先于首个请求返回结果
+     */
+    public static void recordHedge(String method, boolean won) {
+        MethodStats stats = getStats(method);
+        stats.hedges.incrementAndGet();
+        if (won) {
+            stats.hedgeWins.incrementAndGet();
+        }
+    }
+
+    /**
+     * 记录一次错误
+     *
+     * @param method    方法名称
+     * @param errorCode 错误码，无法获取时传入描述，如 timeout、exception
+     */
+    public static void recordError(String method, String errorCode) {
+        getStats(method).errors.computeIfAbsent(errorCode == null ? "unknown" : errorCode, k -> new AtomicLong(0L)).incrementAndGet();
+    }
+
+    /**
+     * 获取指定方法近期的耗时直方图，包含当前和上一个快照周期的请求
+     *
+     * @param method 方法名称
+     * @return 直方图，未请求过时为 null
+     */
+    public static LatencyHistogram getRecentLatency(String method) {
+        MethodStats stats = statsMap.get(method);
+        return stats == null ? null : LatencyHistogram.merge(stats.previousLatency, stats.recentLatency);
+    }
+
+    /**
+     * 生成统计快照，每个方法一行
+     *
+     * @return 快照文本
+     */
+    public static String snapshot() {
+        List<String> methods = new ArrayList<>(statsMap.keySet());
+        Collections.sort(methods);
+        StringBuilder sb = new StringBuilder();
+        sb.append("# ").append(TimeUtil.getCommonDate(System.currentTimeMillis())).append('\n');
+        sb.append("# method attempts retries p50 p90 p99 max wait expired errors\n");
+        for (String method : methods) {
+            MethodStats stats = statsMap.get(method);
+            if (stats == null) {
+                continue;
+            }
+            LatencyHistogram latency = stats.latency;
+            sb.append(method)
+                    .append(' ').append(stats.attempts.get())
+                    .append(' ').append(stats.retries.get())
+                    .append(' ').append(latency.getPercentile(0.5))
+                    .append(' ').append(latency.getPercentile(0.9))
+                    .append(' ').append(latency.getPercentile(0.99))
+                    .append(' ').append(latency.getMax())
+                    .append(' ').append(stats.limiterWait.get())
+                    .append(' ').append(stats.expired.get())
+                    .append(' ');
+            if (stats.errors.isEmpty()) {
+                sb.append('-');
+            } else {
+                boolean first = true;
+                for (Map.Entry<String, AtomicLong> entry : stats.errors.entrySet()) {
+                    if (!first) {
+                        sb.append(',');
+                    }
+                    sb.append(entry.getKey()).append('=').append(entry.getValue().get());
+                    first = false;
+                }
+            }
+            sb.append('\n');
+        }
+        sb.append("# hedge method issued won\n");
+        for (String method : methods) {
+            MethodStats stats = statsMap.get(method);
+            if (stats == null || stats.hedges.get() == 0) {
+                continue;
+            }
+            sb.append(method)
+                    .append(' ').append(stats.hedges.get())
+                    .append(' ').append(stats.hedgeWins.get())
+                    .append('\n');
+        }
+        sb.append("# lane count p50 p90 p99 max\n");
+        for (RpcLane lane : RpcLane.values()) {
+            LatencyHistogram wait = laneWaitMap.get(lane);
+            if (wait == null) {
+                continue;
+            }
+            sb.append(lane)
+                    .append(' ').append(wait.getCount())
+                    .append(' ').append(wait.getPercentile(0.5))
+                    .append(' ').append(wait.getPercentile(0.9))
+                    .append(' ').append(wait.getPercentile(0.99))
+                    .append(' ').append(wait.getMax())
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 将快照写入统计文件
+     */
+    public static void writeSnapshot() {
+        if (statsMap.isEmpty()) {
+            return;
+        }
+        try {
+            Files.write2File(snapshot(), Files.getRpcStatsFile());
+        } catch (Throwable t) {
+            Log.printStackTrace(TAG, t);
+        }
+    }
+
+    /**
+     * 开始定时写入快照
+     */
+    public static synchronized void start() {
+        if (snapshotFuture != null && !snapshotFuture.isDone()) {
+            return;
+        }
+        snapshotFuture = GlobalThreadPools.getRpcScheduler().scheduleAtFixedRate(() -> {
+            writeSnapshot();
+            rotateRecentLatency();
+        }, SNAPSHOT_PERIOD, SNAPSHOT_PERIOD, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 停止定时写入并写入最后一次快照，清空统计
+     */
+    public static synchronized void stop() {
+        if (snapshotFuture != null) {
+            snapshotFuture.cancel(false);
+            snapshotFuture = null;
+        }
+        writeSnapshot();
+        statsMap.clear();
+        laneWaitMap.clear();
+    }
+
+    /**
+     * 近期耗时进入下一个窗口，丢弃上上个周期的数据
+     */
+    private static void rotateRecentLatency() {
+        for (MethodStats stats : statsMap.values()) {
+            stats.previousLatency = stats.recentLatency;
+            stats.recentLatency = new LatencyHistogram();
+        }
+    }
+
+    private static MethodStats getStats(String method) {
+        return statsMap.computeIfAbsent(method, k -> new MethodStats());
+    }
+
+    /**
+     * 单个方法的统计
+     */
+    private static class MethodStats {
+        private final AtomicLong attempts = new AtomicLong(0L);
+        private final AtomicLong retries = new AtomicLong(0L);
+        private final AtomicLong limiterWait = new AtomicLong(0L);
+        private final AtomicLong expired = new AtomicLong(0L);
+        private final AtomicLong hedges = new AtomicLong(0L);
+        private final AtomicLong hedgeWins = new AtomicLong(0L);
+        private final Map<String, AtomicLong> errors = new ConcurrentHashMap<>();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        /**
+         * 当前快照周期的耗时
+         */
+        private volatile LatencyHistogram recentLatency = new LatencyHistogram();
+        /**
+         * 上一个快照周期的耗时
+         */
+        private volatile LatencyHistogram previousLatency = new LatencyHistogram();
+    }
+}
@@ -99,6 +99,21 @@ public class BaseModel extends Model {
      */
     @Getter
     public static final BooleanModelField debugMode = new BooleanModelField("debugMode", "开启抓包(基于新接口)", false);
+    /**
+     * 回放抓包文件，设置后从该文件回放响应，不发出真实请求，用于离线复现任务
+     */
+    @Getter
+    public static final StringModelField replayCaptureFile = new StringModelField("replayCaptureFile", "回放抓包文件(调试|关闭:留空)", "");
+    /**
+     * RPC 完整报文日志采样，每 N 次请求在系统日志中输出一次完整的请求参数和响应数据，开启抓包时全部输出
+     */
+    @Getter
+    public static final IntegerModelField rpcLogSampleRate = new IntegerModelField("rpcLogSampleRate", "RPC完整日志采样(每N次|关闭:0)", 0, 0, 10000);
+    /**
+     * 账号全局请求间隔，所有接口共享一个令牌桶，允许少量突发
+     */
+    @Getter
+    public static final IntegerModelField rpcGlobalInterval = new IntegerModelField("rpcGlobalInterval", "全局请求间隔(毫秒|不限:0)", 50, 0, 5000);
 
     /**
      * 是否申请支付宝的后台运行权限
@@ -171,6 +186,9 @@ public class BaseModel extends Model {
         modelFields.addField(setMaxErrorCount);//异常次数阈值
         modelFields.addField(newRpc);//是否启用新接口
         modelFields.addField(debugMode);//是否开启抓包调试模式
+        modelFields.addField(replayCaptureFile);//回放抓包文件
+        modelFields.addField(rpcLogSampleRate);//RPC完整日志采样
+        modelFields.addField(rpcGlobalInterval);//账号全局请求间隔
         modelFields.addField(sendHookData);//启用Hook数据转发
         modelFields.addField(sendHookDataUrl);//Hook数据转发地址
         modelFields.addField(batteryPerm);//是否申请支付宝的后台运行权限
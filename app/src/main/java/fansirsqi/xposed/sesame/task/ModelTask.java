@@ -7,7 +7,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import fansirsqi.xposed.sesame.hook.rpc.stats.LatencyHistogram;
 import fansirsqi.xposed.sesame.model.Model;
 import fansirsqi.xposed.sesame.model.ModelFields;
 import fansirsqi.xposed.sesame.model.ModelType;
@@ -21,6 +23,18 @@ import lombok.Setter;
 public abstract class ModelTask extends Model {
     private static final Map<ModelTask, Thread> MAIN_TASK_MAP = new ConcurrentHashMap<>();
     private static final ThreadPoolExecutor MAIN_THREAD_POOL = new ThreadPoolExecutor(getModelArray().length, Integer.MAX_VALUE, 30L, TimeUnit.SECONDS, new SynchronousQueue<>(), new ThreadPoolExecutor.CallerRunsPolicy());
+    /**
+     * 超过截止时间而未执行的子任务数量
+     */
+    private static final AtomicLong EXPIRED_CHILD_TASK_COUNT = new AtomicLong(0L);
+    /**
+     * 每个任务执行子任务的最大线程数
+     */
+    private static final int CHILD_TASK_POOL_SIZE = 8;
+    /**
+     * 所有任务共用的定时器，执行时间在未来的子任务到期后才交给任务的线程池，等待期间不占用线程
+     */
+    private static final TimerWheel TIMER_WHEEL = new TimerWheel("ChildTaskTimer", 10, 512, Runnable::run);
     private final Map<String, ChildModelTask> childTaskMap = new ConcurrentHashMap<>();
     private TaskExecutor taskExecutor;
     @Getter
@@ -53,7 +67,7 @@ public abstract class ModelTask extends Model {
      */
     @Override
     public final void prepare() {
-        taskExecutor = new TaskExecutor();
+        taskExecutor = new TaskExecutor(CHILD_TASK_POOL_SIZE);
     }
 
     /**
@@ -142,9 +156,7 @@ public abstract class ModelTask extends Model {
                     value.cancel();
                 }
                 childTask.setModelTask(this);
-                if (taskExecutor != null) {
-                    taskExecutor.submit(childTask);
-                }
+                dispatchChildTask(childTask);
                 return childTask;
             });
         } else {
@@ -154,14 +166,39 @@ public abstract class ModelTask extends Model {
                     oldTask.cancel();
                 }
                 childTask.setModelTask(this);
-                if (taskExecutor != null) {
-                    taskExecutor.submit(childTask);
-                }
+                dispatchChildTask(childTask);
                 childTaskMap.put(childId, childTask);
             }
         }
     }
 
+    /**
+     * 执行子任务，执行时间在未来时交给定时器，到期后再提交到线程池
+     *
+     * @param childTask 子任务对象
+     */
+    private void dispatchChildTask(ChildModelTask childTask) {
+        if (taskExecutor == null) {
+            return;
+        }
+        Long execTime = childTask.getExecTime();
+        if (execTime != null && execTime > System.currentTimeMillis()) {
+            TimerWheel.Timeout timeout = TIMER_WHEEL.schedule(() -> taskExecutor.submit(childTask), execTime);
+            childTask.setCancelTask(timeout::cancel);
+        } else {
+            taskExecutor.submit(childTask);
+        }
+    }
+
+    /**
+     * 获取子任务定时器，用于查看待执行数量和触发偏差
+     *
+     * @return 定时器
+     */
+    public static TimerWheel getTimerWheel() {
+        return TIMER_WHEEL;
+    }
+
     /**
      * 移除指定ID的子任务
      *
@@ -283,6 +320,18 @@ public abstract class ModelTask extends Model {
                 }
             }
         }
+        LatencyHistogram jitter = TIMER_WHEEL.getJitter();
+        Log.runtime("子任务定时器待执行：" + TIMER_WHEEL.size() + "，触发偏差 p50：" + jitter.getPercentile(0.5) + "ms，p99：" + jitter.getPercentile(0.99)
+                + "ms，丢弃过期子任务：" + EXPIRED_CHILD_TASK_COUNT.get());
+    }
+
+    /**
+     * 获取超过截止时间而未执行的子任务数量
+     *
+     * @return 子任务数量
+     */
+    public static long getExpiredChildTaskCount() {
+        return EXPIRED_CHILD_TASK_COUNT.get();
     }
 
     @Getter
@@ -295,6 +344,11 @@ public abstract class ModelTask extends Model {
         private final Long execTime;
         private CancelTask cancelTask;
         private Boolean isCancel = false;
+        /**
+         * 子任务的绝对截止时间（毫秒），开始执行时已超过则丢弃，0 表示不限
+         */
+        @Setter
+        private volatile long deadline;
 
         protected ChildModelTask(String id, long execTime) {
             this(id, null, null, execTime);
@@ -337,6 +391,11 @@ public abstract class ModelTask extends Model {
          * 执行子任务
          */
         public final void run() {
+            if (deadline > 0 && System.currentTimeMillis() >= deadline) {
+                EXPIRED_CHILD_TASK_COUNT.incrementAndGet();
+                Log.runtime("子任务[" + id + "]已超过截止时间，丢弃");
+                return;
+            }
             getRunnable().run();
         }
 
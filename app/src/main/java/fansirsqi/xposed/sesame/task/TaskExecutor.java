@@ -4,11 +4,12 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import fansirsqi.xposed.sesame.util.GlobalThreadPools;
 import fansirsqi.xposed.sesame.util.Log;
 import lombok.Getter;
 
@@ -35,13 +36,17 @@ public class TaskExecutor {
         });
     }
     
-    public TaskExecutor(int corePoolSize, int maximumPoolSize) {
-        this.executor = Executors.newThreadPoolExecutor(
-            corePoolSize, 
-            maximumPoolSize, 
-            60L, 
+    /**
+     * 有界线程池，超出线程数的任务排队执行，空闲线程 60 秒后回收
+     * @param maximumPoolSize 最大线程数
+     */
+    public TaskExecutor(int maximumPoolSize) {
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
+            maximumPoolSize,
+            maximumPoolSize,
+            60L,
             TimeUnit.SECONDS,
-            GlobalThreadPools.getWorkQueue(),
+            new LinkedBlockingQueue<>(),
             new ThreadFactory() {
                 @Override
                 public Thread newThread(Runnable r) {
@@ -52,6 +57,8 @@ public class TaskExecutor {
                 }
             }
         );
+        threadPool.allowCoreThreadTimeOut(true);
+        this.executor = threadPool;
     }
     
     /**
@@ -0,0 +1,278 @@
+package fansirsqi.xposed.sesame.task;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import fansirsqi.xposed.sesame.hook.rpc.stats.LatencyHistogram;
+import fansirsqi.xposed.sesame.util.Log;
+
+/**
+ * 哈希时间轮定时器。
+ * 由单个线程按固定刻度推进，定时任务按到期刻度放入对应槽位，到期时交给执行器运行，
+ * 不再为每个定时任务占用一个睡眠线程。取消只修改任务状态，由时间轮线程在经过槽位时移除。
+ * 没有待执行任务时线程挂起，新任务加入后再唤醒，空闲时不消耗 CPU。
+ */
+public class TimerWheel {
+    private static final String TAG = "TimerWheel";
+    private static final int STATE_INIT = 0;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED = 2;
+    private final String name;
+    /**
+     * 刻度时长（毫秒）
+     */
+    private final long tickDuration;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor executor;
+    /**
+     * 新加入的任务，由时间轮线程在每个刻度转入槽位
+     */
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    /**
+     * 尚未到期且未取消的任务数量
+     */
+    private final AtomicInteger timeoutCount = new AtomicInteger(0);
+    /**
+     * 实际触发时间与预定时间的偏差分布
+     */
+    private final LatencyHistogram jitter = new LatencyHistogram();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private volatile Thread workerThread;
+    private long startTime;
+    private long tick;
+
+    /**
+     * 创建时间轮
+     *
+     * @param name          线程名称
+     * @param tickDuration  刻度时长（毫秒）
+     * @param ticksPerWheel 槽位数量，向上取整为 2 的幂
+     * @param executor      到期任务的执行器
+     */
+    public TimerWheel(String name, long tickDuration, int ticksPerWheel, Executor executor) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("tickDuration and ticksPerWheel must be positive");
+        }
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.name = name;
+        this.tickDuration = tickDuration;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.executor = executor;
+    }
+
+    /**
+     * 添加定时任务
+     *
+     * @param task        任务
+     * @param executeTime 执行时间（毫秒）
+     * @return 可取消的定时任务
+     */
+    public Timeout schedule(Runnable task, long executeTime) {
+        Timeout timeout = new Timeout(task, executeTime);
+        timeoutCount.incrementAndGet();
+        pendingTimeouts.offer(timeout);
+        start();
+        lock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        return timeout;
+    }
+
+    /**
+     * 获取等待执行的任务数量
+     *
+     * @return 任务数量
+     */
+    public int size() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * 获取触发偏差分布，即实际触发时间晚于预定时间的毫秒数
+     *
+     * @return 直方图
+     */
+    public LatencyHistogram getJitter() {
+        return jitter;
+    }
+
+    private void start() {
+        if (workerThread != null) {
+            return;
+        }
+        synchronized (this) {
+            if (workerThread == null) {
+                Thread thread = new Thread(this::work, name);
+                thread.setDaemon(true);
+                workerThread = thread;
+                thread.start();
+            }
+        }
+    }
+
+    private void work() {
+        startTime = System.currentTimeMillis();
+        tick = 0;
+        while (true) {
+            try {
+                awaitTimeouts();
+                long deadline = startTime + (tick + 1) * tickDuration;
+                long sleep = deadline - System.currentTimeMillis();
+                if (sleep > 0) {
+                    Thread.sleep(sleep);
+                }
+                tick++;
+                transferPendingTimeouts();
+                wheel[(int) (tick & mask)].expire(System.currentTimeMillis());
+            } catch (InterruptedException e) {
+                Log.runtime(TAG, name + " 被中断");
+                workerThread = null;
+                return;
+            } catch (Throwable t) {
+                Log.printStackTrace(TAG, t);
+            }
+        }
+    }
+
+    /**
+     * 没有待执行任务时挂起，恢复后将刻度对齐到当前时间，跳过空闲期间的空槽位
+     */
+    private void awaitTimeouts() throws InterruptedException {
+        if (timeoutCount.get() > 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (timeoutCount.get() == 0) {
+                notEmpty.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+        tick = (System.currentTimeMillis() - startTime) / tickDuration;
+    }
+
+    private void transferPendingTimeouts() {
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.state.get() != STATE_INIT) {
+                continue;
+            }
+            long ticks = Math.max((timeout.executeTime - startTime + tickDuration - 1) / tickDuration, tick);
+            timeout.remainingRounds = (ticks - tick) / wheel.length;
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * 定时任务
+     */
+    public class Timeout {
+        private final Runnable task;
+        private final long executeTime;
+        private final AtomicInteger state = new AtomicInteger(STATE_INIT);
+        private long remainingRounds;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task, long executeTime) {
+            this.task = task;
+            this.executeTime = executeTime;
+        }
+
+        /**
+         * 取消任务，尚未执行时返回 true
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(STATE_INIT, STATE_CANCELLED)) {
+                return false;
+            }
+            timeoutCount.decrementAndGet();
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        private void expire(long now) {
+            if (!state.compareAndSet(STATE_INIT, STATE_EXPIRED)) {
+                return;
+            }
+            timeoutCount.decrementAndGet();
+            jitter.record(now - executeTime);
+            try {
+                executor.execute(task);
+            } catch (Throwable t) {
+                Log.printStackTrace(TAG, t);
+            }
+        }
+    }
+
+    /**
+     * 槽位，双向链表，只由时间轮线程访问
+     */
+    private static class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private void expire(long now) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.state.get() != STATE_INIT) {
+                    remove(timeout);
+                } else if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire(now);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = timeout.next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+}
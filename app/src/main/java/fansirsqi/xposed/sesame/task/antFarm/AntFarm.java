@@ -25,6 +25,7 @@ import fansirsqi.xposed.sesame.data.DataCache;
 import fansirsqi.xposed.sesame.entity.AlipayUser;
 import fansirsqi.xposed.sesame.entity.MapperEntity;
 import fansirsqi.xposed.sesame.entity.ParadiseCoinBenefit;
+import fansirsqi.xposed.sesame.hook.rpc.clock.ServerClock;
 import fansirsqi.xposed.sesame.hook.rpc.intervallimit.RpcIntervalLimit;
 import fansirsqi.xposed.sesame.model.BaseModel;
 import fansirsqi.xposed.sesame.model.ModelFields;
@@ -554,7 +555,9 @@ public class AntFarm extends ModelTask {
                 Log.runtime(TAG, "当前已关闭小鸡睡觉");
                 return;
             }
+            // 睡觉、起床时间按服务器时间判断，定时任务换算为本地时间执行
             Calendar now = TimeUtil.getNow();
+            now.setTimeInMillis(ServerClock.serverNow());
             Calendar animalSleepTimeCalendar = TimeUtil.getTodayCalendarByTimeStr(sleepTimeStr);
             if (animalSleepTimeCalendar == null) {
                 Log.record(TAG, "小鸡睡觉时间格式错误，请重新设置");
@@ -581,11 +584,11 @@ public class AntFarm extends ModelTask {
             String sleepTaskId = "AS|" + animalSleepTime;
             String wakeUpTaskId = "AW|" + animalWakeUpTime;
             if (!hasChildTask(sleepTaskId) && !afterSleepTime) {
-                addChildTask(new ChildModelTask(sleepTaskId, "AS", this::animalSleepNow, animalSleepTime));
+                addChildTask(new ChildModelTask(sleepTaskId, "AS", this::animalSleepNow, ServerClock.toLocalTime(animalSleepTime)));
                 Log.record(TAG, "添加定时睡觉🛌[" + UserMap.getCurrentMaskName() + "]在[" + TimeUtil.getCommonDate(animalSleepTime) + "]执行");
             }
             if (!hasChildTask(wakeUpTaskId) && !afterWakeUpTime) {
-                addChildTask(new ChildModelTask(wakeUpTaskId, "AW", this::animalWakeUpNow, animalWakeUpTime));
+                addChildTask(new ChildModelTask(wakeUpTaskId, "AW", this::animalWakeUpNow, ServerClock.toLocalTime(animalWakeUpTime)));
                 Log.record(TAG, "添加定时起床🛌[" + UserMap.getCurrentMaskName() + "]在[" + TimeUtil.getCommonDate(animalWakeUpTime) + "]执行");
             }
             if (afterSleepTime) {
@@ -1470,7 +1473,7 @@ public class AntFarm extends ModelTask {
         syncAnimalStatus(ownerFarmId);
         double consumeSpeed = 0d;
         double allFoodHaveEatten = 0d;
-        long nowTime = System.currentTimeMillis() / 1000;
+        long nowTime = ServerClock.serverNow() / 1000;
         for (Animal animal : animals) {
             if (animal.masterFarmId.equals(ownerFarmId)) {
                 consumeSpeed = animal.consumeSpeed;
@@ -10,11 +10,23 @@ import java.util.Map;
 import java.util.UUID;
 
 import fansirsqi.xposed.sesame.hook.RequestManager;
+import fansirsqi.xposed.sesame.hook.rpc.cache.RpcResponseCache;
 import fansirsqi.xposed.sesame.util.RandomUtil;
 
 public class AntFarmRpcCall {
     private static final String VERSION = "1.8.2302070202.46";
 
+    static {
+        // 任务列表：完成任务、领取奖励后失效
+        RpcResponseCache.register("com.alipay.antfarm.listFarmTask", 30_000, "antFarm.task");
+        RpcResponseCache.registerMutation("antFarm.task",
+                "com.alipay.antfarm.doFarmTask",
+                "com.alipay.antfarm.receiveFarmTaskAward",
+                "com.alipay.antfarm.receiveToolTaskReward",
+                "com.alipay.antfarm.sign",
+                "com.alipay.antfarm.recordFarmGame");
+    }
+
 
     /**
      * 进入农场
@@ -17,10 +17,18 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import de.robv.android.xposed.XposedHelpers;
 import fansirsqi.xposed.sesame.data.DataCache;
 import fansirsqi.xposed.sesame.data.RuntimeInfo;
 import fansirsqi.xposed.sesame.data.Status;
@@ -30,11 +38,16 @@ import fansirsqi.xposed.sesame.entity.FriendWatch;
 import fansirsqi.xposed.sesame.entity.KVMap;
 import fansirsqi.xposed.sesame.entity.OtherEntityProvider;
 import fansirsqi.xposed.sesame.entity.RpcEntity;
+import fansirsqi.xposed.sesame.entity.RpcLane;
 import fansirsqi.xposed.sesame.entity.VitalityStore;
 import fansirsqi.xposed.sesame.hook.RequestManager;
 import fansirsqi.xposed.sesame.hook.Toast;
+import fansirsqi.xposed.sesame.hook.rpc.bridge.FastJsonAccessor;
+import fansirsqi.xposed.sesame.hook.rpc.clock.ServerClock;
+import fansirsqi.xposed.sesame.hook.rpc.intervallimit.DefaultIntervalLimit;
 import fansirsqi.xposed.sesame.hook.rpc.intervallimit.FixedOrRangeIntervalLimit;
 import fansirsqi.xposed.sesame.hook.rpc.intervallimit.RpcIntervalLimit;
+import fansirsqi.xposed.sesame.hook.rpc.intervallimit.StripedPacer;
 import fansirsqi.xposed.sesame.model.BaseModel;
 import fansirsqi.xposed.sesame.model.ModelFields;
 import fansirsqi.xposed.sesame.model.ModelGroup;
@@ -48,7 +61,6 @@ import fansirsqi.xposed.sesame.model.modelFieldExt.StringModelField;
 import fansirsqi.xposed.sesame.task.ModelTask;
 import fansirsqi.xposed.sesame.task.TaskCommon;
 import fansirsqi.xposed.sesame.task.TaskStatus;
-import fansirsqi.xposed.sesame.ui.ObjReference;
 import fansirsqi.xposed.sesame.util.Average;
 import fansirsqi.xposed.sesame.util.GlobalThreadPools;
 import fansirsqi.xposed.sesame.util.ListUtil;
@@ -66,9 +78,16 @@ import lombok.Getter;
 public class AntForest extends ModelTask {
     public static final String TAG = AntForest.class.getSimpleName();
 
-    private static final Average offsetTimeMath = new Average(5);
 
     private final AtomicInteger taskCount = new AtomicInteger(0);
+    /**
+     * 本轮好友巡护已发起的请求数
+     */
+    private final AtomicInteger friendRpcCount = new AtomicInteger(0);
+    private final BubbleIndex bubbleIndex = new BubbleIndex();
+    private final EnergyRankingSync energyRankingSync = new EnergyRankingSync();
+    private final FriendRanker friendRanker = new FriendRanker(bubbleIndex);
+    private final BubblePredictor bubblePredictor = new BubblePredictor();
     private String selfId;
     private Integer tryCountInt;
     private Integer retryIntervalInt;
@@ -80,28 +99,15 @@ public class AntForest extends ModelTask {
     private FixedOrRangeIntervalLimit collectIntervalEntity;
     private FixedOrRangeIntervalLimit doubleCollectIntervalEntity;
     /**
-     * 双击卡结束时间
-     */
-    private volatile long doubleEndTime = 0;
-    /**
-     * 隐身卡结束时间
-     */
-    private volatile long stealthEndTime = 0;
-    /**
-     * 保护罩结束时间
+     * 道具背包与使用中道具（双击卡、隐身卡、保护罩、炸弹卡、1.1倍能量卡）的结束时间
      */
-    private volatile long shieldEndTime = 0;
-    /**
-     * 炸弹卡结束时间
-     */
-    private volatile long energyBombCardEndTime = 0;
-    /**
-     * 1.1倍能量卡结束时间
-     */
-    private volatile long robExpandCardEndTime = 0;
+    private final PropInventory propInventory = new PropInventory();
 
     private final Average delayTimeMath = new Average(5);
-    private final ObjReference<Long> collectEnergyLockLimit = new ObjReference<>(0L);
+    /**
+     * 收取间隔按好友分别计算，不同好友的收取互不等待；账号整体的收取速率由 RpcIntervalLimit 控制
+     */
+    private final StripedPacer collectPacer = new StripedPacer();
     private final Object doubleCardLockObj = new Object();
     private BooleanModelField expiredEnergy; // 收取过期能量
     private BooleanModelField collectEnergy;
@@ -113,6 +119,28 @@ public class AntForest extends ModelTask {
     private BooleanModelField collectWateringBubble;
     private BooleanModelField batchRobEnergy;
     private BooleanModelField balanceNetworkDelay;
+    private BooleanModelField hedgeCollect;
+    private IntegerModelField hedgePercentile;
+    /**
+     * 好友巡护的请求上限，0 为不限
+     */
+    private IntegerModelField friendRpcBudget;
+    /**
+     * 完整巡护间隔（分钟），其余轮次只查询能量球索引中即将成熟的好友
+     */
+    private IntegerModelField friendFullSweepInterval;
+    /**
+     * 同时进行的好友主页查询数
+     */
+    private IntegerModelField friendQueryParallelism;
+    /**
+     * 完整排行榜同步间隔（分钟），其余轮次只查询排行榜头部
+     */
+    private IntegerModelField rankingFullSyncInterval;
+    /**
+     * 按预测的能量球成熟时间额外巡护好友
+     */
+    private BooleanModelField predictPatrol;
     private BooleanModelField closeWhackMole;
     private BooleanModelField collectProp;
     private StringModelField queryInterval;
@@ -167,7 +195,15 @@ public class AntForest extends ModelTask {
      */
     private ChoiceModelField energyBombCardType;
 
-    private final Set<String> cacheCollectedList = new HashSet<>();
+    private final Set<String> cacheCollectedList = ConcurrentHashMap.newKeySet();
+    /**
+     * 好友主页解析线程，好友巡护时按响应到达顺序依次处理
+     */
+    private final ExecutorService friendWorker = new ThreadPoolExecutor(0, 1, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+        Thread thread = new Thread(r, "AntForestFriendWorker");
+        thread.setDaemon(true);
+        return thread;
+    });
     /**
      * 加速器定时
      */
@@ -208,6 +244,22 @@ public class AntForest extends ModelTask {
     }
 
     private static final int MAX_BATCH_SIZE = 6;
+    /**
+     * 预测巡护的分组时长（毫秒），同一组的好友一起查询
+     */
+    private static final long PREDICT_PATROL_SLOT = 5 * 60 * 1000L;
+    /**
+     * 预测时间距现在不足该时长的好友不单独巡护（毫秒）
+     */
+    private static final long PREDICT_PATROL_MIN_LEAD = 60 * 1000L;
+    /**
+     * 每轮最多添加的预测巡护任务数
+     */
+    private static final int PREDICT_PATROL_MAX_SLOTS = 6;
+    /**
+     * 蹲点收取的有效窗口（毫秒），能量成熟超过该时间后蹲点请求及其重试不再发起，由常规巡护收取
+     */
+    private static final long ENERGY_TIMER_WINDOW = 10_000;
 
     @SuppressWarnings("unused")
     public interface applyPropType {
@@ -292,12 +344,19 @@ public class AntForest extends ModelTask {
 
 
         modelFields.addField(queryInterval = new StringModelField("queryInterval", "查询间隔(毫秒或毫秒范围)", "1000-2000"));
-        modelFields.addField(collectInterval = new StringModelField("collectInterval", "收取间隔(毫秒或毫秒范围)", "1000-1500"));
+        modelFields.addField(collectInterval = new StringModelField("collectInterval", "收取间隔(同一好友，毫秒或毫秒范围)", "1000-1500"));
         modelFields.addField(doubleCollectInterval = new StringModelField("doubleCollectInterval", "双击间隔(毫秒或毫秒范围)", "800-2400"));
         modelFields.addField(balanceNetworkDelay = new BooleanModelField("balanceNetworkDelay", "平衡网络延迟", true));
         modelFields.addField(advanceTime = new IntegerModelField("advanceTime", "提前时间(毫秒)", 0, Integer.MIN_VALUE, 500));
         modelFields.addField(tryCount = new IntegerModelField("tryCount", "尝试收取(次数)", 1, 0, 5));
         modelFields.addField(retryInterval = new IntegerModelField("retryInterval", "重试间隔(毫秒)", 1200, 0, 10000));
+        modelFields.addField(hedgeCollect = new BooleanModelField("hedgeCollect", "蹲点收取 | 对冲请求", false));
+        modelFields.addField(hedgePercentile = new IntegerModelField("hedgePercentile", "蹲点收取 | 对冲等待(收取耗时百分位)", 90, 50, 99));
+        modelFields.addField(friendRpcBudget = new IntegerModelField("friendRpcBudget", "好友巡护 | 请求上限(不限:0)", 0, 0, 10000));
+        modelFields.addField(friendQueryParallelism = new IntegerModelField("friendQueryParallelism", "好友巡护 | 并发查询数", 3, 1, 10));
+        modelFields.addField(rankingFullSyncInterval = new IntegerModelField("rankingFullSyncInterval", "好友巡护 | 完整排行榜间隔(分钟，每轮:0)", 180, 0, 1440));
+        modelFields.addField(friendFullSweepInterval = new IntegerModelField("friendFullSweepInterval", "好友巡护 | 完整巡护间隔(分钟，每轮:0)", 60, 0, 1440));
+        modelFields.addField(predictPatrol = new BooleanModelField("predictPatrol", "好友巡护 | 按预测成熟时间巡护", true));
         return modelFields;
     }
 
@@ -328,6 +387,7 @@ public class AntForest extends ModelTask {
         RpcIntervalLimit.addIntervalLimit("alipay.antmember.forest.h5.collectEnergy", 200);
         RpcIntervalLimit.addIntervalLimit("alipay.antmember.forest.h5.queryEnergyRanking", 200);
         RpcIntervalLimit.addIntervalLimit("alipay.antforest.forest.h5.fillUserRobFlag", 500);
+        RpcIntervalLimit.addPrefixIntervalLimit("alipay.antforest.", new DefaultIntervalLimit(100), 5);//森林接口整体限速
         tryCountInt = tryCount.getValue();
         retryIntervalInt = retryInterval.getValue();
         advanceTimeInt = advanceTime.getValue();
@@ -346,6 +406,10 @@ public class AntForest extends ModelTask {
             Log.record(TAG, "执行开始-蚂蚁" + getName());
             taskCount.set(0);
             selfId = UserMap.getCurrentUid();
+            bubbleIndex.load(selfId);
+            energyRankingSync.load(selfId);
+            bubblePredictor.load(selfId);
+            propInventory.bind(selfId);
             usePropBeforeCollectEnergy(selfId);
 
             collectFriendEnergy();// 优先收取好友能量
@@ -456,7 +520,11 @@ public class AntForest extends ModelTask {
                 Log.record(TAG, "执行中断-蚂蚁森林");
             }
             cacheCollectedList.clear();
+            collectPacer.removeIdle(System.currentTimeMillis(), TimeUnit.MINUTES.toMillis(10));
             FriendWatch.save(selfId);
+            bubbleIndex.save();
+            energyRankingSync.save();
+            bubblePredictor.save();
             String str_totalCollected = "本次总 收:" + totalCollected + "g 帮:" + totalHelpCollected + "g 浇:" + totalWatered + "g";
             Notify.updateLastExecText(str_totalCollected);
         }
@@ -772,42 +840,14 @@ public class AntForest extends ModelTask {
     private JSONObject querySelfHome() {
         JSONObject userHomeObj = null;
         try {
-            long start = System.currentTimeMillis();
             userHomeObj = new JSONObject(AntForestRpcCall.queryHomePage());
             updateSelfHomePage(userHomeObj);
-            long end = System.currentTimeMillis();
-            long serverTime = userHomeObj.getLong("now");
-            int offsetTime = offsetTimeMath.nextInteger((int) ((start + end) / 2 - serverTime));
-            Log.runtime(TAG, "服务器时间：" + serverTime + "，本地与服务器时间差：" + offsetTime);
         } catch (Throwable t) {
             Log.printStackTrace(t);
         }
         return userHomeObj;
     }
 
-    /**
-     * 更新好友主页信息
-     *
-     * @param userId 好友ID
-     * @return 更新后的好友主页信息，如果发生错误则返回null。
-     */
-
-    private JSONObject queryFriendHome(String userId) {
-        JSONObject friendHomeObj = null;
-        try {
-            long start = System.currentTimeMillis();
-            friendHomeObj = new JSONObject(AntForestRpcCall.queryFriendHomePage(userId));
-            long end = System.currentTimeMillis();
-            long serverTime = friendHomeObj.getLong("now");
-            int offsetTime = offsetTimeMath.nextInteger((int) ((start + end) / 2 - serverTime));
-            Log.runtime(TAG, "服务器时间：" + serverTime + "，本地与服务器时间差：" + offsetTime);
-        } catch (Throwable t) {
-            Log.printStackTrace(t);
-        }
-        return friendHomeObj; // 返回用户主页对象
-    }
-
-
     /**
      * 格式化时间差为人性化的字符串
      *
@@ -902,7 +942,7 @@ public class AntForest extends ModelTask {
 
             // 5. 获取所有可收集的能量球
             List<Long> availableBubbles = new ArrayList<>();
-            List<Pair<Long, Long>> waitingBubbles = new ArrayList<>();
+            List<BubbleParser.WaitingBubble> waitingBubbles = new ArrayList<>();
 
             extractBubbleInfo(userHomeObj, serverTime, availableBubbles, waitingBubbles, userId);
 
@@ -957,33 +997,21 @@ public class AntForest extends ModelTask {
      * @throws JSONException JSON解析异常
      */
 
-    private void extractBubbleInfo(JSONObject userHomeObj, long serverTime, List<Long> availableBubbles, List<Pair<Long, Long>> waitingBubbles, String userId) throws JSONException {
+    private void extractBubbleInfo(JSONObject userHomeObj, long serverTime, List<Long> availableBubbles, List<BubbleParser.WaitingBubble> waitingBubbles, String userId) throws JSONException {
         if (!userHomeObj.has("bubbles")) return;
-        JSONArray jaBubbles = userHomeObj.getJSONArray("bubbles");
-        int checkInterval = checkIntervalInt + checkIntervalInt / 2;
-        for (int i = 0; i < jaBubbles.length(); i++) {
-            JSONObject bubble = jaBubbles.getJSONObject(i);
-            long bubbleId = bubble.getLong("id");
-            long produceTime = bubble.getLong("produceTime");//成熟时间
-            String statusStr = bubble.getString("collectStatus");
-            CollectStatus status = CollectStatus.valueOf(statusStr);
-            switch (status) {
-                case AVAILABLE:
-                    availableBubbles.add(bubbleId);
-                    break;
-                case WAITING://此处适合增加加速卡的处理，但是需要注意 需要 userid==selfId
-                    if (checkInterval > produceTime - serverTime) {
-                        waitingBubbles.add(new Pair<>(bubbleId, produceTime));
-                    } else {
-                        Log.runtime(TAG, "用户[" + UserMap.getMaskName(userId) + "]能量id: [" + bubbleId + "]成熟时间: " + TimeUtil.getCommonDate(produceTime));
-                    }
-                    break;
+        bubbleIndex.reset(userId);
+        boolean isSelf = Objects.equals(userId, selfId);
+        BubbleParser.extractBubbleInfo(userHomeObj, serverTime, checkIntervalInt + checkIntervalInt / 2, availableBubbles, waitingBubbles, (bubbleId, produceTime, status, waiting) -> {
+            if (!isSelf) {
+                bubblePredictor.observe(userId, bubbleId, produceTime);
             }
-        }
-
-    }
-
-    private record Pair<F, S>(F first, S second) {
+            if (status == BubbleParser.CollectStatus.WAITING) {
+                bubbleIndex.record(userId, bubbleId, produceTime);
+                if (!waiting) {
+                    Log.runtime(TAG, "用户[" + UserMap.getMaskName(userId) + "]能量id: [" + bubbleId + "]成熟时间: " + TimeUtil.getCommonDate(produceTime));
+                }
+            }
+        });
     }
 
     /**
@@ -992,10 +1020,10 @@ public class AntForest extends ModelTask {
      * @param userId         用户ID
      * @param waitingBubbles 等待成熟的能量球ID列表
      */
-    private void scheduleWaitingBubbles(String userId, List<Pair<Long, Long>> waitingBubbles) {
-        for (Pair<Long, Long> pair : waitingBubbles) {
-            long bubbleId = pair.first();
-            long produceTime = pair.second();
+    private void scheduleWaitingBubbles(String userId, List<BubbleParser.WaitingBubble> waitingBubbles) {
+        for (BubbleParser.WaitingBubble waitingBubble : waitingBubbles) {
+            long bubbleId = waitingBubble.bubbleId();
+            long produceTime = waitingBubble.produceTime();
             if (!hasChildTask(AntForest.getEnergyTimerTid(userId, bubbleId))) {
                 addChildTask(new EnergyTimerTask(userId, bubbleId, produceTime));
                 Log.record(TAG, "添加蹲点⏰[" + UserMap.getMaskName(userId) + "]在[" + TimeUtil.getCommonDate(produceTime) + "]执行");
@@ -1031,37 +1059,57 @@ public class AntForest extends ModelTask {
     }
 
 
+    /**
+     * 收取好友能量，按预期收益从高到低访问好友
+     */
     private void collectFriendEnergy() {
         try {
-            JSONObject friendsObject = new JSONObject(AntForestRpcCall.queryEnergyRanking());
-            if (!ResChecker.checkRes(TAG, friendsObject)) {
-                Log.error(TAG, "获取好友排行榜失败: " + friendsObject.optString("resultDesc"));
-                return;
+            friendRpcCount.set(0);
+            long startTime = System.currentTimeMillis();
+            boolean fullSweep = bubbleIndex.isFullSweepDue(startTime, friendFullSweepInterval.getValue() * 60_000L);
+            EnergyRankingSync.Ranking ranking = energyRankingSync.sync(rankingFullSyncInterval.getValue() * 60_000L);
+            if (ranking == null) return;
+            friendRpcCount.addAndGet(ranking.requestCount);
+
+            // 排名靠前的好友（通常自己也在其中）已带收取标记，直接排序处理
+            Map<String, JSONObject> flaggedFriends = new LinkedHashMap<>();
+            JSONArray friendRanking = ranking.friendRanking;
+            if (friendRanking != null) {
+                for (int i = 0; i < friendRanking.length(); i++) {
+                    JSONObject friendObj = friendRanking.getJSONObject(i);
+                    String userId = friendObj.optString("userId");
+                    if (!Objects.equals(userId, selfId)) {
+                        flaggedFriends.put(userId, friendObj);
+                    }
+                }
             }
+            if (!processFriends(friendRanker.rankFriends(flaggedFriends.values(), checkIntervalInt))) return;
 
-            // 处理排名靠前的好友（通常自己也在其中） 20个
-            collectFriendsEnergy(friendsObject);
-
-            // 分批处理其他好友（从第20位开始）
-            JSONArray totalDatas = friendsObject.optJSONArray("totalDatas");
-            if (totalDatas == null) return;
-
+            // 其余好友按预期收益排序后分批查询收取标记，非完整巡护时跳过索引中没有即将成熟能量球的好友
             List<String> idList = new ArrayList<>();
-            for (int pos = 20; pos < totalDatas.length(); pos++) {
-                JSONObject friend = totalDatas.getJSONObject(pos);
-                String userId = friend.getString("userId");
-
-                if (Objects.equals(userId, selfId)) continue; //如果是自己则跳过
-
-                idList.add(userId);
-                if (idList.size() == 20) {
-                    processBatchFriends(idList);//20个id 一次处理
-                    idList.clear();
+            long serverNow = ServerClock.serverNow();
+            int skipped = 0;
+            for (String userId : ranking.friendIds) {
+                if (Objects.equals(userId, selfId) || flaggedFriends.containsKey(userId)) continue; //跳过自己和已处理的好友
+                if (!fullSweep && !bubbleIndex.isDue(userId, serverNow, checkIntervalInt)
+                        && !bubblePredictor.isLikelyDue(userId, serverNow, checkIntervalInt)) {
+                    skipped++;
+                    continue;
                 }
+                idList.add(userId);
+            }
+            if (skipped > 0) {
+                Log.runtime(TAG, "能量球索引中" + skipped + "个好友暂无即将成熟的能量球，本轮跳过");
             }
-            if (!idList.isEmpty()) {
-                processBatchFriends(idList);
+            List<String> rankedIdList = friendRanker.rank(idList, checkIntervalInt);
+            for (int i = 0; i < rankedIdList.size(); i += 20) {
+                if (errorWait || isOverFriendRpcBudget()) return;
+                processBatchFriends(rankedIdList.subList(i, Math.min(i + 20, rankedIdList.size())));//20个id 一次处理
             }
+            if (fullSweep) {
+                bubbleIndex.markFullSweep(startTime);
+            }
+            schedulePredictedPatrol();
 
             Log.runtime(TAG, "收取好友能量完成！");
 
@@ -1072,6 +1120,54 @@ public class AntForest extends ModelTask {
         }
     }
 
+    /**
+     * 按预测的能量球成熟时间添加巡护任务，不必等待下一次检查间隔。
+     * 只预测有收取记录的好友，预测时间在检查间隔内的好友按 5 分钟分组，每组在该 5 分钟结束时查询一次收取标记。
+     */
+    private void schedulePredictedPatrol() {
+        if (!predictPatrol.getValue() || !collectEnergy.getValue()) return;
+        JSONObject joFriendWatch = FriendWatch.getJoFriendWatch();
+        if (joFriendWatch == null) return;
+        long serverNow = ServerClock.serverNow();
+        TreeMap<Long, List<String>> slotMap = new TreeMap<>();
+        for (String userId : bubblePredictor.getFriendIds()) {
+            if (Objects.equals(userId, selfId) || dontCollectMap.contains(userId) || !joFriendWatch.has(userId)) continue;
+            long next = bubblePredictor.predictNext(userId, serverNow);
+            if (next < serverNow + PREDICT_PATROL_MIN_LEAD || next - serverNow >= checkIntervalInt) continue;
+            long slot = next - next % PREDICT_PATROL_SLOT + PREDICT_PATROL_SLOT;
+            slotMap.computeIfAbsent(slot, k -> new ArrayList<>()).add(userId);
+        }
+        int count = 0;
+        for (Map.Entry<Long, List<String>> entry : slotMap.entrySet()) {
+            if (count++ >= PREDICT_PATROL_MAX_SLOTS) break;
+            long execTime = ServerClock.toLocalTime(entry.getKey());
+            String taskId = "PP|" + entry.getKey();
+            if (hasChildTask(taskId)) continue;
+            List<String> userIds = entry.getValue();
+            addChildTask(new ChildModelTask(taskId, "PP", () -> {
+                List<String> rankedIdList = friendRanker.rank(userIds, checkIntervalInt);
+                for (int i = 0; i < rankedIdList.size(); i += 20) {
+                    if (errorWait) return;
+                    processBatchFriends(rankedIdList.subList(i, Math.min(i + 20, rankedIdList.size())));
+                }
+            }, execTime));
+            Log.record(TAG, "添加预测巡护⏰[" + userIds.size() + "个好友]在[" + TimeUtil.getCommonDate(execTime) + "]执行");
+        }
+    }
+
+    /**
+     * 本轮好友巡护的请求数是否已达上限
+     *
+     * @return 达到上限返回 true
+     */
+    private boolean isOverFriendRpcBudget() {
+        int budget = friendRpcBudget.getValue();
+        if (budget <= 0 || friendRpcCount.get() < budget) {
+            return false;
+        }
+        Log.record(TAG, "好友巡护请求数已达上限[" + budget + "]，跳过剩余好友");
+        return true;
+    }
 
     /**
      * 批量处理好友 - 收能量
@@ -1082,13 +1178,15 @@ public class AntForest extends ModelTask {
         try {
             // 获取好友列表带 robFlag 的数据
             String jsonStr = AntForestRpcCall.fillUserRobFlag(new JSONArray(userIds).toString());
+            friendRpcCount.incrementAndGet();
             JSONObject batchObj = new JSONObject(jsonStr);
             JSONArray friendList = batchObj.optJSONArray("friendRanking");
             if (friendList == null) return;
+            List<JSONObject> friends = new ArrayList<>(friendList.length());
             for (int i = 0; i < friendList.length(); i++) {
-                JSONObject friendObj = friendList.getJSONObject(i);
-                processSingleFriend(friendObj);
+                friends.add(friendList.getJSONObject(i));
             }
+            processFriends(friendRanker.rankFriends(friends, checkIntervalInt));
         } catch (JSONException e) {
             Log.printStackTrace(TAG, "解析批量好友数据失败", e);
         } catch (Exception e) {
@@ -1097,97 +1195,136 @@ public class AntForest extends ModelTask {
     }
 
     /**
-     * 处理单个好友 - 收能量
+     * 流水线处理好友：主页查询以有限并发异步发起，由限流器控制实际速率，查询返回即归还并发许可；
+     * 响应在单个工作线程上解析，可收取的能量、帮收和礼物盒立即加入子任务，不等待其他好友的查询。
      *
-     * @param friendObj 好友的JSON对象
+     * @param friends 排序后的好友对象
+     * @return 中途因异常等待或请求上限停止时返回 false
      */
-    private void processSingleFriend(JSONObject friendObj) {
+    private boolean processFriends(List<JSONObject> friends) {
+        Semaphore permits = new Semaphore(friendQueryParallelism.getValue());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        boolean completed = true;
         try {
-            String userId = friendObj.getString("userId");
-            String userName = UserMap.getMaskName(userId);
-            if (Objects.equals(userId, selfId)) return;//如果是自己，则跳过
-            boolean needCollectEnergy = collectEnergy.getValue() && !dontCollectMap.contains(userId); //开启了收能量功能并且不在排除名单中
-            boolean needHelpProtect = helpFriendCollectType.getValue() != HelpFriendCollectType.NONE && friendObj.optBoolean("canProtectBubble") && Status.hasFlagToday("help_friend_collect_protect::" + selfId);
-
-            boolean needCollectGiftBox = collectGiftBox.getValue() && friendObj.optBoolean("canCollectGiftBox");
-            if (!needCollectEnergy && !needHelpProtect && !needCollectGiftBox) {
-                return;
-            }
-            // 是否需要收集能量
-            boolean canCollect = false;
-            if (needCollectEnergy) {
-                if (friendObj.optBoolean("canCollectEnergy")) {
-                    long canCollectLaterTime = friendObj.getLong("canCollectLaterTime");
-                    if (canCollectLaterTime > 0 && canCollectLaterTime - System.currentTimeMillis() < checkIntervalInt) {//如果收取时间在执行时间范围内，则可以收取
-                        canCollect = true;
-                    }
+            for (JSONObject friendObj : friends) {
+                if (errorWait || isOverFriendRpcBudget()) {
+                    completed = false;
+                    break;
                 }
-            }
-
-            JSONObject userHomeObj = null;
-            // 开始执行收集能量
-            if (needCollectEnergy && canCollect) {
-                userHomeObj = collectUserEnergy(userId, queryFriendHome(userId));
-            }
-
-            if (needHelpProtect) {
-                boolean isProtected = helpFriendCollectList.getValue().contains(userId);
-                if (helpFriendCollectType.getValue() != HelpFriendCollectType.HELP) {
-                    isProtected = !isProtected;
+                if (!needQueryFriendHome(friendObj)) {
+                    continue;
                 }
-                if (isProtected) {
-                    if (userHomeObj == null) {
-                        userHomeObj = queryFriendHome(userId);
-                    }
-                    if (userHomeObj != null) {
-                        protectFriendEnergy(userHomeObj);
+                String userId = friendObj.optString("userId");
+                permits.acquire();
+                friendRpcCount.incrementAndGet();
+                CompletableFuture<String> query = AntForestRpcCall.queryFriendHomePageAsync(userId);
+                // 查询返回即归还并发许可，解析排队不占用查询的并发数
+                query.whenComplete((response, t) -> permits.release());
+                CompletableFuture<Void> future = query.thenAcceptAsync(response -> processFriendHome(friendObj, parseFriendHome(response)), friendWorker);
+                future.whenComplete((v, t) -> {
+                    if (t != null && !(t instanceof CancellationException)) {
+                        Log.printStackTrace(TAG, "处理好友[" + UserMap.getMaskName(userId) + "]异常", t);
                     }
-                }
-            }
-
-            // 尝试领取礼物盒
-            if (needCollectGiftBox) {
-                if (userHomeObj == null) {
-                    userHomeObj = queryFriendHome(userId);
-                }
-                if (userHomeObj != null) {
-                    collectGiftBox(userHomeObj);
-                }
+                });
+                futures.add(future);
+            }
+            // 可中断等待，停止任务时由 finally 取消尚未处理的好友主页
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).exceptionally(t -> null).get();
+        } catch (InterruptedException e) {
+            Log.runtime(TAG, "好友巡护被中断");
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            Log.printStackTrace(TAG, "好友巡护出错", e);
+        } finally {
+            // 中途退出时取消尚未处理的好友主页，任务结束后不再在工作线程上解析；正常结束时均已完成，取消无效
+            for (CompletableFuture<Void> future : futures) {
+                future.cancel(false);
             }
+        }
+        return completed;
+    }
 
+    private JSONObject parseFriendHome(String response) {
+        try {
+            return response == null ? null : new JSONObject(response);
         } catch (JSONException e) {
-            Log.printStackTrace(TAG, "处理单个好友[" + friendObj.optString("userId") + "]出错", e);
-        } catch (Exception e) {
-            Log.printStackTrace(TAG, "处理好友异常", e);
+            Log.printStackTrace(TAG, "解析好友主页失败", e);
+            return null;
+        }
+    }
+
+    /**
+     * 根据收取标记判断是否需要查询好友主页
+     *
+     * @param friendObj 好友的JSON对象
+     * @return 需要收能量、帮收或领取礼物盒时返回 true
+     */
+    private boolean needQueryFriendHome(JSONObject friendObj) {
+        String userId = friendObj.optString("userId");
+        if (Objects.equals(userId, selfId)) return false;//如果是自己，则跳过
+        bubbleIndex.recordFlag(friendObj);
+        return canCollectFriendEnergy(friendObj) || needProtectFriend(friendObj) || needCollectFriendGiftBox(friendObj);
+    }
+
+    /**
+     * 开启了收能量功能、不在排除名单中，且收取时间在执行时间范围内
+     */
+    private boolean canCollectFriendEnergy(JSONObject friendObj) {
+        String userId = friendObj.optString("userId");
+        if (!collectEnergy.getValue() || dontCollectMap.contains(userId) || !friendObj.optBoolean("canCollectEnergy")) {
+            return false;
         }
+        long canCollectLaterTime = friendObj.optLong("canCollectLaterTime");
+        return canCollectLaterTime > 0 && canCollectLaterTime - System.currentTimeMillis() < checkIntervalInt;
+    }
+
+    private boolean needProtectFriend(JSONObject friendObj) {
+        if (helpFriendCollectType.getValue() == HelpFriendCollectType.NONE || !friendObj.optBoolean("canProtectBubble") || !Status.hasFlagToday("help_friend_collect_protect::" + selfId)) {
+            return false;
+        }
+        boolean isProtected = helpFriendCollectList.getValue().contains(friendObj.optString("userId"));
+        if (helpFriendCollectType.getValue() != HelpFriendCollectType.HELP) {
+            isProtected = !isProtected;
+        }
+        return isProtected;
+    }
+
+    private boolean needCollectFriendGiftBox(JSONObject friendObj) {
+        return collectGiftBox.getValue() && friendObj.optBoolean("canCollectGiftBox");
     }
 
     /**
-     * 收取好友能量
+     * 处理单个好友主页 - 收能量、帮收、领取礼物盒
      *
-     * @param friendsObject 好友列表的JSON对象
+     * @param friendObj   好友的JSON对象
+     * @param userHomeObj 好友主页
      */
-    private void collectFriendsEnergy(JSONObject friendsObject) {
+    private void processFriendHome(JSONObject friendObj, JSONObject userHomeObj) {
+        if (userHomeObj == null) {
+            return;
+        }
         try {
-            if (errorWait) return;
-
-            JSONArray friendRanking = friendsObject.optJSONArray("friendRanking");
-            if (friendRanking == null) {
-                Log.runtime(TAG, "无好友数据可处理");
-                return;
+            String userId = friendObj.getString("userId");
+            // 开始执行收集能量
+            if (canCollectFriendEnergy(friendObj)) {
+                collectUserEnergy(userId, userHomeObj);
+            }
+            // 帮收与领取礼物盒包含同步请求和等待，作为子任务执行，不阻塞解析线程
+            if (needProtectFriend(friendObj)) {
+                addChildTask(new ChildModelTask("PF|" + userId, "PF", () -> protectFriendEnergy(userHomeObj)));
             }
-            for (int i = 0; i < friendRanking.length(); i++) {
-                JSONObject friendObj = friendRanking.getJSONObject(i);
-                processSingleFriend(friendObj); // 处理单个好友
+            // 尝试领取礼物盒
+            if (needCollectFriendGiftBox(friendObj)) {
+                addChildTask(new ChildModelTask("GB|" + userId, "GB", () -> collectGiftBox(userHomeObj)));
             }
         } catch (JSONException e) {
-            Log.printStackTrace(TAG, "解析好友排行榜子项失败", e);
+            Log.printStackTrace(TAG, "处理单个好友[" + friendObj.optString("userId") + "]出错", e);
         } catch (Exception e) {
-            Log.printStackTrace(TAG, "处理好友列表异常", e);
+            Log.printStackTrace(TAG, "处理好友异常", e);
         }
     }
 
-
     private void collectGiftBox(JSONObject userHomeObj) {
         try {
             JSONObject giftBoxInfo = userHomeObj.optJSONObject("giftBoxInfo");
@@ -1286,35 +1423,50 @@ public class AntForest extends ModelTask {
                         String userId = collectEnergyEntity.getUserId();
                         usePropBeforeCollectEnergy(userId);
                         RpcEntity rpcEntity = collectEnergyEntity.getRpcEntity();
+                        if (rpcEntity.isExpired(System.currentTimeMillis())) {
+                            Log.record(TAG, "[" + UserMap.getMaskName(userId) + "]蹲点收取已超过有效窗口，放弃");
+                            return;
+                        }
                         boolean needDouble = collectEnergyEntity.getNeedDouble();
                         boolean needRetry = collectEnergyEntity.getNeedRetry();
                         int tryCount = collectEnergyEntity.addTryCount();
                         int collected = 0;
                         long startTime;
-                        synchronized (collectEnergyLockLimit) {
-                            long sleep;
-                            if (needDouble) {
-                                collectEnergyEntity.unsetNeedDouble();
-                                sleep = doubleCollectIntervalEntity.getInterval() - System.currentTimeMillis() + collectEnergyLockLimit.get();
-                            } else if (needRetry) {
-                                collectEnergyEntity.unsetNeedRetry();
-                                sleep = retryIntervalInt - System.currentTimeMillis() + collectEnergyLockLimit.get();
-                            } else {
-                                sleep = collectIntervalEntity.getInterval() - System.currentTimeMillis() + collectEnergyLockLimit.get();
-                            }
-                            if (sleep > 0) {
-                                GlobalThreadPools.sleep(sleep);
+                        long interval;
+                        if (needDouble) {
+                            collectEnergyEntity.unsetNeedDouble();
+                            interval = doubleCollectIntervalEntity.getInterval();
+                        } else if (needRetry) {
+                            collectEnergyEntity.unsetNeedRetry();
+                            interval = retryIntervalInt;
+                        } else {
+                            interval = collectIntervalEntity.getInterval();
+                        }
+                        long sleep = collectPacer.reserve(userId, System.currentTimeMillis(), interval) - System.currentTimeMillis();
+                        if (sleep > 0) {
+                            GlobalThreadPools.sleep(sleep);
+                        }
+                        startTime = System.currentTimeMillis();
+                        if (collectEnergyEntity.getHedge() && !needDouble && !needRetry) {
+                            // 首次蹲点收取，慢于近期收取耗时百分位时发起对冲请求，后续重试使用先返回的请求
+                            RpcEntity winner = RequestManager.requestObjectHedged(rpcEntity, 0, 0, hedgePercentile.getValue() / 100.0);
+                            if (winner != null && winner != rpcEntity) {
+                                rpcEntity = winner;
+                                collectEnergyEntity.setRpcEntity(winner);
                             }
-                            startTime = System.currentTimeMillis();
-                            collectEnergyLockLimit.setForce(startTime);
+                        } else {
+                            RequestManager.requestObject(rpcEntity, 0, 0);
                         }
-                        RequestManager.requestObject(rpcEntity, 0, 0);
                         long spendTime = System.currentTimeMillis() - startTime;
+                        if (!rpcEntity.getHasResult() && rpcEntity.isExpired(System.currentTimeMillis())) {
+                            // 限流等待超过截止时间，请求已被丢弃
+                            return;
+                        }
                         if (balanceNetworkDelay.getValue()) {
                             delayTimeMath.nextInteger((int) (spendTime / 3));
                         }
                         if (rpcEntity.getHasError()) {
-                            String errorCode = (String) XposedHelpers.callMethod(rpcEntity.getResponseObject(), "getString", "error");
+                            String errorCode = FastJsonAccessor.getString(rpcEntity.getResponseObject(), "error");
                             if ("1004".equals(errorCode)) {
                                 if (BaseModel.getWaitWhenException().getValue() > 0) {
                                     long waitTime = System.currentTimeMillis() + BaseModel.getWaitWhenException().getValue();
@@ -1326,7 +1478,7 @@ public class AntForest extends ModelTask {
                                 }
                                 GlobalThreadPools.sleep(600 + RandomUtil.delay());
                             }
-                            if (tryCount < tryCountInt) {
+                            if (tryCount < tryCountInt && !rpcEntity.isExpired(System.currentTimeMillis() + retryIntervalInt)) {
                                 collectEnergyEntity.setNeedRetry();
                                 collectEnergy(collectEnergyEntity, true);
                             }
@@ -1340,7 +1492,7 @@ public class AntForest extends ModelTask {
                                 return;
                             }
                             Log.record(TAG, "[" + UserMap.getMaskName(userId) + "]" + jo.getString("resultDesc"));
-                            if (tryCount < tryCountInt) {
+                            if (tryCount < tryCountInt && !rpcEntity.isExpired(System.currentTimeMillis() + retryIntervalInt)) {
                                 collectEnergyEntity.setNeedRetry();
                                 collectEnergy(collectEnergyEntity);
                             }
@@ -1398,6 +1550,8 @@ public class AntForest extends ModelTask {
                                 Log.runtime(TAG, "，UserID：" + userId + "，BubbleId：" + bubble.getLong("id"));
                             }
                             if (bubble.getBoolean("canBeRobbedAgain")) {
+                                // 双击是新的收取，不受蹲点窗口限制
+                                rpcEntity.setDeadline(0);
                                 collectEnergyEntity.setNeedDouble();
                                 collectEnergyEntity.resetTryCount();
                                 collectEnergy(collectEnergyEntity);
@@ -1466,30 +1620,31 @@ public class AntForest extends ModelTask {
             if (usingUserPropsNew.length() == 0) {
                 usingUserPropsNew = joHomePage.getJSONArray("usingUserPropsNew");
             }
+            propInventory.confirmEndTimes();
             for (int i = 0; i < usingUserPropsNew.length(); i++) {
                 JSONObject userUsingProp = usingUserPropsNew.getJSONObject(i);
                 String propGroup = userUsingProp.getString("propGroup");
                 switch (propGroup) {
                     case "doubleClick": // 双击卡
-                        doubleEndTime = userUsingProp.getLong("endTime");
-                        Log.runtime(TAG, "双击卡剩余时间⏰：" + formatTimeDifference(doubleEndTime - System.currentTimeMillis()));
+                        propInventory.setEndTime("doubleClick", userUsingProp.getLong("endTime"));
+                        Log.runtime(TAG, "双击卡剩余时间⏰：" + formatTimeDifference(propInventory.getEndTime("doubleClick") - System.currentTimeMillis()));
                         break;
                     case "stealthCard": // 隐身卡
-                        stealthEndTime = userUsingProp.getLong("endTime");
-                        Log.runtime(TAG, "隐身卡剩余时间⏰️：" + formatTimeDifference(stealthEndTime - System.currentTimeMillis()));
+                        propInventory.setEndTime("stealthCard", userUsingProp.getLong("endTime"));
+                        Log.runtime(TAG, "隐身卡剩余时间⏰️：" + formatTimeDifference(propInventory.getEndTime("stealthCard") - System.currentTimeMillis()));
                         break;
                     case "shield": // 能量保护罩
-                        shieldEndTime = userUsingProp.getLong("endTime");
-                        Log.runtime(TAG, "保护罩剩余时间⏰：" + formatTimeDifference(shieldEndTime - System.currentTimeMillis()));
+                        propInventory.setEndTime("shield", userUsingProp.getLong("endTime"));
+                        Log.runtime(TAG, "保护罩剩余时间⏰：" + formatTimeDifference(propInventory.getEndTime("shield") - System.currentTimeMillis()));
                         break;
                     case "energyBombCard": // 能量炸弹卡
-                        energyBombCardEndTime = userUsingProp.getLong("endTime");
-                        Log.runtime(TAG, "能量炸弹卡剩余时间⏰：" + formatTimeDifference(energyBombCardEndTime - System.currentTimeMillis()));
+                        propInventory.setEndTime("energyBombCard", userUsingProp.getLong("endTime"));
+                        Log.runtime(TAG, "能量炸弹卡剩余时间⏰：" + formatTimeDifference(propInventory.getEndTime("energyBombCard") - System.currentTimeMillis()));
                         break;
                     case "robExpandCard": // 1.1倍能量卡
                         String extInfo = userUsingProp.optString("extInfo");
-                        robExpandCardEndTime = userUsingProp.getLong("endTime");
-                        Log.runtime(TAG, "1.1倍能量卡剩余时间⏰：" + formatTimeDifference(robExpandCardEndTime - System.currentTimeMillis()));
+                        propInventory.setEndTime("robExpandCard", userUsingProp.getLong("endTime"));
+                        Log.runtime(TAG, "1.1倍能量卡剩余时间⏰：" + formatTimeDifference(propInventory.getEndTime("robExpandCard") - System.currentTimeMillis()));
                         if (!extInfo.isEmpty()) {
                             JSONObject extInfoObj = new JSONObject(extInfo);
                             double leftEnergy = Double.parseDouble(extInfoObj.optString("leftEnergy", "0"));
@@ -1778,17 +1933,21 @@ public class AntForest extends ModelTask {
             if (Objects.equals(selfId, userId)) {
                 return;
             }
+            long now = System.currentTimeMillis();
+            if (propInventory.needRefreshEndTimes(now)) {
+                // 本地估计的道具结束时间已过，查询主页确认道具是否仍在使用中
+                updateSelfHomePage();
+            }
 
+            boolean needDouble = !doubleCard.getValue().equals(applyPropType.CLOSE) && propInventory.getEndTime("doubleClick") < now;
 
-            boolean needDouble = !doubleCard.getValue().equals(applyPropType.CLOSE) && doubleEndTime < System.currentTimeMillis();
-
-            boolean needrobExpand = !robExpandCard.getValue().equals(applyPropType.CLOSE) && robExpandCardEndTime < System.currentTimeMillis();
+            boolean needrobExpand = !robExpandCard.getValue().equals(applyPropType.CLOSE) && propInventory.getEndTime("robExpandCard") < now;
 
-            boolean needStealth = !stealthCard.getValue().equals(applyPropType.CLOSE) && stealthEndTime < System.currentTimeMillis();
+            boolean needStealth = !stealthCard.getValue().equals(applyPropType.CLOSE) && propInventory.getEndTime("stealthCard") < now;
             boolean needShield =
-                    !shieldCard.getValue().equals(applyPropType.CLOSE) && energyBombCardType.getValue().equals(applyPropType.CLOSE) && ((shieldEndTime - System.currentTimeMillis()) < 3600);//调整保护罩剩余时间不超过一小时自动续命
+                    !shieldCard.getValue().equals(applyPropType.CLOSE) && energyBombCardType.getValue().equals(applyPropType.CLOSE) && ((propInventory.getEndTime("shield") - now) < 3600);//调整保护罩剩余时间不超过一小时自动续命
             boolean needEnergyBombCard =
-                    !energyBombCardType.getValue().equals(applyPropType.CLOSE) && shieldCard.getValue().equals(applyPropType.CLOSE) && ((energyBombCardEndTime - System.currentTimeMillis()) < 3600);//调整保护罩剩余时间不超过一小时自动续命
+                    !energyBombCardType.getValue().equals(applyPropType.CLOSE) && shieldCard.getValue().equals(applyPropType.CLOSE) && ((propInventory.getEndTime("energyBombCard") - now) < 3600);//调整保护罩剩余时间不超过一小时自动续命
 
             boolean needBubbleBoostCard = !bubbleBoostCard.getValue().equals(applyPropType.CLOSE);
 
@@ -1864,6 +2023,7 @@ public class AntForest extends ModelTask {
                         JSONObject giveResultJo = new JSONObject(AntForestRpcCall.giveProp(giveConfigId, propId, targetUserId));
                         if (ResChecker.checkRes(TAG, giveResultJo)) {
                             Log.forest("赠送道具🎭[" + UserMap.getMaskName(targetUserId) + "]#" + propName);
+                            propInventory.invalidateBag();
                         } else {
                             Log.record(giveResultJo.getString("resultDesc"));
                             Log.runtime(giveResultJo.toString());
@@ -2210,16 +2370,15 @@ public class AntForest extends ModelTask {
      * 获取背包信息
      */
     private JSONObject queryPropList() {
-        try {
-            JSONObject bagObject = new JSONObject(AntForestRpcCall.queryPropList(false));
-            if (ResChecker.checkRes(TAG, bagObject)) {
-                return bagObject;
-            }
-            Log.error(TAG, "获取背包信息失败: " + bagObject);
-        } catch (Exception e) {
-            Log.printStackTrace(TAG, "获取背包信息失败:", e);
-        }
-        return null;
+        return propInventory.getBag();
+    }
+
+    /**
+     * 兑换或领取道具后重新获取背包信息
+     */
+    private JSONObject refreshPropList() {
+        propInventory.invalidateBag();
+        return propInventory.getBag();
     }
 
     /**
@@ -2267,9 +2426,10 @@ public class AntForest extends ModelTask {
                 String propName = propJsonObj.getJSONObject("propConfigVO").getString("propName");
                 String tag = propEmoji(propName);
                 Log.forest("使用道具" + tag + "[" + propName + "]");
-                updateSelfHomePage();
+                propInventory.onConsumed(propJsonObj);
                 return true;
             } else {
+                propInventory.invalidateBag();
                 Log.record(jo.getString("resultDesc"));
                 Log.runtime(jo.toString());
                 return false;
@@ -2311,17 +2471,15 @@ public class AntForest extends ModelTask {
                 JSONObject jo = findPropBag(bagObject, "LIMIT_TIME_ENERGY_DOUBLE_CLICK");
                 if (jo == null && doubleCardConstant.getValue()) {//如果背包内没有双击卡
                     if (Vitality.handleVitalityExchange("SK20240805004754")) {//就鸡巴兑换
-                        jo = findPropBag(queryPropList(), "ENERGY_DOUBLE_CLICK_31DAYS");
+                        jo = findPropBag(refreshPropList(), "ENERGY_DOUBLE_CLICK_31DAYS");
                     } else if (Vitality.handleVitalityExchange("CR20230516000363")) {
-                        jo = findPropBag(queryPropList(), "LIMIT_TIME_ENERGY_DOUBLE_CLICK");
+                        jo = findPropBag(refreshPropList(), "LIMIT_TIME_ENERGY_DOUBLE_CLICK");
                     }
                 }
                 if (jo == null) jo = findPropBag(bagObject, "ENERGY_DOUBLE_CLICK");
                 if (jo != null && usePropBag(jo)) {
-                    doubleEndTime = System.currentTimeMillis() + 1000 * 60 * 5;
+                    propInventory.setEstimatedEndTime("doubleClick", System.currentTimeMillis() + 1000 * 60 * 5);
                     Status.DoubleToday();
-                } else {
-                    updateSelfHomePage();
                 }
             }
         } catch (Throwable th) {
@@ -2341,16 +2499,14 @@ public class AntForest extends ModelTask {
             JSONObject jo = findPropBag(bagObject, "LIMIT_TIME_STEALTH_CARD");
             if (jo == null && stealthCardConstant.getValue()) {
                 if (exchangeStealthCard()) {
-                    jo = findPropBag(queryPropList(), "LIMIT_TIME_STEALTH_CARD");
+                    jo = findPropBag(refreshPropList(), "LIMIT_TIME_STEALTH_CARD");
                 }
             }
             if (jo == null) {
                 jo = findPropBag(bagObject, "STEALTH_CARD");
             }
             if (jo != null && usePropBag(jo)) {
-                stealthEndTime = System.currentTimeMillis() + 1000 * 60 * 60 * 24;
-            } else {
-                updateSelfHomePage();
+                propInventory.setEstimatedEndTime("stealthCard", System.currentTimeMillis() + 1000 * 60 * 60 * 24);
             }
         } catch (Throwable th) {
             Log.error(TAG + "useStealthCard err");
@@ -2368,20 +2524,18 @@ public class AntForest extends ModelTask {
             if (jo == null) {
                 if (youthPrivilege.getValue()) {
                     if (Privilege.INSTANCE.youthPrivilege()) {
-                        jo = findPropBag(queryPropList(), "LIMIT_TIME_ENERGY_SHIELD_TREE");
+                        jo = findPropBag(refreshPropList(), "LIMIT_TIME_ENERGY_SHIELD_TREE");
                     } // 重新查找
                 } else if (shieldCardConstant.getValue()) {
                     if (exchangeEnergyShield()) {
-                        jo = findPropBag(queryPropList(), "LIMIT_TIME_ENERGY_SHIELD");
+                        jo = findPropBag(refreshPropList(), "LIMIT_TIME_ENERGY_SHIELD");
                     }
                 } else {
                     jo = findPropBag(bagObject, "ENERGY_SHIELD"); // 尝试查找 普通保护罩，一般用不到
                 }
             }
             if (jo != null && usePropBag(jo)) {
-                shieldEndTime = System.currentTimeMillis() + 1000 * 60 * 60 * 24;
-            } else {
-                updateSelfHomePage();
+                propInventory.setEstimatedEndTime("shield", System.currentTimeMillis() + 1000 * 60 * 60 * 24);
             }
         } catch (Throwable th) {
             Log.error(TAG + "useShieldCard err");
@@ -2426,7 +2580,7 @@ public class AntForest extends ModelTask {
             JSONObject jo = findPropBag(bag, "LIMIT_TIME_ENERGY_BUBBLE_BOOST");
             if (jo == null) {
                 Privilege.INSTANCE.youthPrivilege();
-                jo = findPropBag(queryPropList(), "LIMIT_TIME_ENERGY_BUBBLE_BOOST"); // 重新查找
+                jo = findPropBag(refreshPropList(), "LIMIT_TIME_ENERGY_BUBBLE_BOOST"); // 重新查找
                 if (jo == null) {
                     jo = findPropBag(bag, "BUBBLE_BOOST"); // 尝试查找 普通加速器，一般用不到
                 }
@@ -2445,7 +2599,7 @@ public class AntForest extends ModelTask {
         try {
             JSONObject jo = findPropBag(bag, "VITALITY_ROB_EXPAND_CARD_1.1_3DAYS");
             if (jo != null && usePropBag(jo)) {
-                robExpandCardEndTime = System.currentTimeMillis() + 1000 * 60 * 5;
+                propInventory.setEstimatedEndTime("robExpandCard", System.currentTimeMillis() + 1000 * 60 * 5);
             }
         } catch (Throwable th) {
             Log.runtime(TAG, "useBubbleBoostCard err");
@@ -2468,7 +2622,7 @@ public class AntForest extends ModelTask {
                 }
                 String skuId = skuInfo.getString("skuId");
                 if (Status.canVitalityExchangeToday(skuId, 1) && Vitality.VitalityExchange(skuInfo.getString("spuId"), skuId, "限时能量雨机会")) {
-                    jo = findPropBag(queryPropList(), "LIMIT_TIME_ENERGY_RAIN_CHANCE");
+                    jo = findPropBag(refreshPropList(), "LIMIT_TIME_ENERGY_RAIN_CHANCE");
                 }
             }
             // 使用 道具
@@ -2496,24 +2650,17 @@ public class AntForest extends ModelTask {
                 }
                 String skuId = skuInfo.getString("skuId");
                 if (Status.canVitalityExchangeToday(skuId, 1) && Vitality.VitalityExchange(skuInfo.getString("spuId"), skuId, "能量炸弹卡")) {
-                    jo = findPropBag(queryPropList(), "ENERGY_BOMB_CARD");
+                    jo = findPropBag(refreshPropList(), "ENERGY_BOMB_CARD");
                 }
             }
             if (jo != null && usePropBag(jo)) {
-                energyBombCardEndTime = System.currentTimeMillis() + 1000 * 60 * 60 * 24;
-            } else {
-                updateSelfHomePage();
+                propInventory.setEstimatedEndTime("energyBombCard", System.currentTimeMillis() + 1000 * 60 * 60 * 24);
             }
         } catch (Throwable th) {
             Log.error(TAG + "useShieldCard err");
         }
     }
 
-    /**
-     * 收取状态的枚举类型
-     */
-    public enum CollectStatus {AVAILABLE, WAITING, INSUFFICIENT, ROBBED}
-
     /**
      * 能量定时任务类型
      */
@@ -2533,29 +2680,25 @@ public class AntForest extends ModelTask {
          * @param pt  能量产生时间
          */
         EnergyTimerTask(String uid, long bid, long pt) {
-            // 调用父类构造方法，传入任务ID和提前执行时间
-            super(AntForest.getEnergyTimerTid(uid, bid), pt - advanceTimeInt);
+            // 调用父类构造方法，传入任务ID和提前执行时间，定时器按 10ms 精度在该时间点执行，不在线程内等待
+            super(AntForest.getEnergyTimerTid(uid, bid), ServerClock.toLocalTime(pt) - advanceTimeInt - delayTimeMath.getAverageInteger() + 70);
             userId = uid;
             bubbleId = bid;
             produceTime = pt;
+            setDeadline(ServerClock.toLocalTime(pt) + ENERGY_TIMER_WINDOW);
         }
 
         @Override
         public Runnable setRunnable() {
             return () -> {
                 String userName = UserMap.getMaskName(userId);
-                int averageInteger = offsetTimeMath.getAverageInteger();
-                long readyTime = produceTime - advanceTimeInt + averageInteger - delayTimeMath.getAverageInteger() - System.currentTimeMillis() + 70;
-                if (readyTime > 0) {
-                    try {
-                        Thread.sleep(readyTime);
-                    } catch (InterruptedException e) {
-                        Log.runtime(TAG, "终止[" + userName + "]蹲点收取任务, 任务ID[" + getId() + "]");
-                        return;
-                    }
-                }
-                Log.record(TAG, "执行蹲点收取⏰ 任务ID " + getId() + " [" + userName + "]" + "时差[" + averageInteger + "]ms" + "提前[" + advanceTimeInt + "]ms");
-                collectEnergy(new CollectEnergyEntity(userId, null, AntForestRpcCall.getCollectEnergyRpcEntity(null, userId, bubbleId)), true);
+                Log.record(TAG, "执行蹲点收取⏰ 任务ID " + getId() + " [" + userName + "]" + "时差[" + ServerClock.getOffset() + "±" + ServerClock.getUncertainty() + "]ms" + "提前[" + advanceTimeInt + "]ms");
+                RpcEntity rpcEntity = AntForestRpcCall.getCollectEnergyRpcEntity(null, userId, bubbleId);
+                rpcEntity.setLane(RpcLane.CRITICAL);
+                rpcEntity.setDeadline(getDeadline());
+                CollectEnergyEntity collectEnergyEntity = new CollectEnergyEntity(userId, null, rpcEntity);
+                collectEnergyEntity.setHedge(hedgeCollect.getValue());
+                collectEnergy(collectEnergyEntity, true);
             };
         }
     }
@@ -6,11 +6,15 @@ import org.json.JSONObject;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import fansirsqi.xposed.sesame.entity.AlipayVersion;
 import fansirsqi.xposed.sesame.entity.RpcEntity;
+import fansirsqi.xposed.sesame.entity.RpcLane;
 import fansirsqi.xposed.sesame.hook.ApplicationHook;
 import fansirsqi.xposed.sesame.hook.RequestManager;
+import fansirsqi.xposed.sesame.hook.rpc.cache.RpcResponseCache;
+import fansirsqi.xposed.sesame.hook.rpc.cache.RpcSingleFlight;
 import fansirsqi.xposed.sesame.util.RandomUtil;
 import fansirsqi.xposed.sesame.util.StringUtil;
 
@@ -20,6 +24,46 @@ import fansirsqi.xposed.sesame.util.StringUtil;
 public class AntForestRpcCall {
     private static String VERSION = "";
 
+    static {
+        // 优先级通道：收取能量优先于主页查询，其余请求为后台通道
+        RpcLane.register(RpcLane.CRITICAL,
+                "alipay.antmember.forest.h5.collectEnergy",
+                "alipay.antforest.forest.h5.collectRebornEnergy",
+                "alipay.antforest.forest.h5.collectRobExpandEnergy",
+                "alipay.antforest.forest.h5.collectAnimalRobEnergy",
+                "alipay.antforest.forest.h5.protectBubble");
+        RpcLane.register(RpcLane.INTERACTIVE,
+                "alipay.antforest.forest.h5.queryHomePage",
+                "alipay.antforest.forest.h5.queryFriendHomePage",
+                "alipay.antmember.forest.h5.queryEnergyRanking");
+        // 主页：收取、使用道具、保护罩等操作后失效
+        RpcResponseCache.register("alipay.antforest.forest.h5.queryHomePage", 5_000, "antForest.home");
+        RpcSingleFlight.register("alipay.antforest.forest.h5.queryHomePage",
+                "alipay.antforest.forest.h5.queryFriendHomePage",
+                "alipay.antmember.forest.h5.queryEnergyRanking");
+        RpcResponseCache.registerMutation("antForest.home",
+                "alipay.antmember.forest.h5.collectEnergy",
+                "alipay.antforest.forest.h5.consumeProp",
+                "alipay.antforest.forest.h5.collectRebornEnergy",
+                "alipay.antforest.forest.h5.collectRobExpandEnergy",
+                "alipay.antforest.forest.h5.collectAnimalRobEnergy",
+                "alipay.antforest.forest.h5.protectBubble",
+                "alipay.antforest.forest.h5.energyRainSettlement");
+        // 道具背包由 PropInventory 缓存，使用、兑换后失效，不注册响应缓存
+        // 活力值商店，商品列表与详情由 VitalityCatalog 按天缓存，不注册响应缓存
+        RpcResponseCache.register("alipay.antforest.forest.h5.queryVitalityStoreIndex", 60_000, "antForest.vitality");
+        RpcResponseCache.registerMutation("antForest.vitality",
+                "com.alipay.antcommonweal.exchange.h5.exchangeBenefit",
+                "alipay.antforest.forest.h5.vitalitySign");
+        // 任务列表
+        RpcResponseCache.register("alipay.antforest.forest.h5.queryTaskList", 30_000, "antForest.task");
+        RpcResponseCache.registerMutation("antForest.task",
+                "com.alipay.antiep.finishTask",
+                "com.alipay.antiep.receiveTaskAward",
+                "com.alipay.antiep.sign",
+                "alipay.antforest.forest.h5.popupTask");
+    }
+
     public static void init() {
         AlipayVersion alipayVersion = ApplicationHook.getAlipayVersion();
         if (alipayVersion.compareTo(new AlipayVersion("10.5.88.8000")) > 0) {
@@ -35,11 +79,16 @@ public class AntForestRpcCall {
         return String.valueOf(System.currentTimeMillis()) + RandomUtil.nextLong();
     }
 
-    public static String queryEnergyRanking() {
+    /**
+     * 查询好友能量排行榜
+     *
+     * @param withTotalDatas 是否返回全部好友 totalDatas，否则只返回带收取标记的头部
+     */
+    public static String queryEnergyRanking(boolean withTotalDatas) {
         return RequestManager.requestString(
                 "alipay.antmember.forest.h5.queryEnergyRanking",
                 "[{\"periodType\":\"total\",\"rankType\":\"energyRank\",\"source\":\"chInfo_ch_appcenter__chsub_9patch\",\"version\":\"" + VERSION + "\"}]",
-                "{\"pathList\":[\"friendRanking\",\"myself\",\"totalDatas\"]}");
+                withTotalDatas ? "{\"pathList\":[\"friendRanking\",\"myself\",\"totalDatas\"]}" : "{\"pathList\":[\"friendRanking\",\"myself\"]}");
     }
 
     public static String fillUserRobFlag(String userIdList) {
@@ -65,16 +114,33 @@ public class AntForestRpcCall {
     public static String queryFriendHomePage(String userId) {
         return RequestManager.requestString(
                 "alipay.antforest.forest.h5.queryFriendHomePage",
-                "[{\"canRobFlags\":\"F,F,F,F,F\",\"configVersionMap\":{\"redPacketConfig\":0,\"wateringBubbleConfig\":\"10\"}," +
-                        "\"source\":\"chInfo_ch_appcenter__chsub_9patch\",\"userId\":\""
-                        + userId
-                        + "\",\"version\":\""
-                        + VERSION
-                        + "\"}]",
+                getQueryFriendHomePageData(userId),
+                3,
+                1000);
+    }
+
+    /**
+     * 异步查询好友主页，等待限流时不占用线程
+     *
+     * @param userId 好友ID
+     * @return 响应字符串的 Future
+     */
+    public static CompletableFuture<String> queryFriendHomePageAsync(String userId) {
+        return RequestManager.requestStringAsync(
+                new RpcEntity("alipay.antforest.forest.h5.queryFriendHomePage", getQueryFriendHomePageData(userId)),
                 3,
                 1000);
     }
 
+    private static String getQueryFriendHomePageData(String userId) {
+        return "[{\"canRobFlags\":\"F,F,F,F,F\",\"configVersionMap\":{\"redPacketConfig\":0,\"wateringBubbleConfig\":\"10\"}," +
+                "\"source\":\"chInfo_ch_appcenter__chsub_9patch\",\"userId\":\""
+                + userId
+                + "\",\"version\":\""
+                + VERSION
+                + "\"}]";
+    }
+
     public static RpcEntity getCollectEnergyRpcEntity(String bizType, String userId, long bubbleId) {
         String args1;
         if (StringUtil.isEmpty(bizType)) {
@@ -0,0 +1,223 @@
+package fansirsqi.xposed.sesame.task.antForest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fansirsqi.xposed.sesame.util.Files;
+import fansirsqi.xposed.sesame.util.Log;
+
+/**
+ * 好友能量球成熟时间索引，按账号持久化。
+ * 记录每个好友最近一次看到的未成熟能量球（球ID、成熟时间）及查看时间，
+ * 下一轮只查询已有能量球成熟或即将成熟、以及尚无记录的好友，其余好友等到完整巡护时再查询。
+ * 仅由收取标记得到的成熟时间没有球ID，以 0 记录。
+ */
+public class BubbleIndex {
+    private static final String TAG = BubbleIndex.class.getSimpleName();
+    /**
+     * 记录有效期（毫秒），超过该时间未查看的好友视为无记录
+     */
+    private static final long MAX_AGE = 3 * 24 * 60 * 60 * 1000L;
+    /**
+     * 好友ID -> 能量球记录
+     */
+    private final Map<String, FriendBubbles> friendMap = new ConcurrentHashMap<>();
+    /**
+     * 当前加载的账号
+     */
+    private String userId;
+    /**
+     * 上次完整巡护的时间
+     */
+    private volatile long lastFullSweepTime = 0;
+
+    /**
+     * 加载账号的索引，账号未变化时不重复加载
+     *
+     * @param userId 账号ID
+     */
+    public synchronized void load(String userId) {
+        if (userId == null || Objects.equals(this.userId, userId)) {
+            return;
+        }
+        this.userId = userId;
+        friendMap.clear();
+        lastFullSweepTime = 0;
+        String str = Files.readFromFile(Files.getBubbleIndexFile(userId));
+        if (str.isEmpty()) {
+            return;
+        }
+        try {
+            JSONObject jo = new JSONObject(str);
+            lastFullSweepTime = jo.optLong("lastFullSweepTime");
+            JSONObject friends = jo.optJSONObject("friends");
+            if (friends == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            Iterator<String> ids = friends.keys();
+            while (ids.hasNext()) {
+                String friendId = ids.next();
+                JSONObject friend = friends.getJSONObject(friendId);
+                long lastSeen = friend.optLong("lastSeen");
+                if (now - lastSeen > MAX_AGE) {
+                    continue;
+                }
+                FriendBubbles friendBubbles = new FriendBubbles(lastSeen);
+                JSONObject bubbles = friend.optJSONObject("bubbles");
+                if (bubbles != null) {
+                    Iterator<String> bubbleIds = bubbles.keys();
+                    while (bubbleIds.hasNext()) {
+                        String bubbleId = bubbleIds.next();
+                        friendBubbles.bubbles.put(Long.parseLong(bubbleId), bubbles.getLong(bubbleId));
+                    }
+                }
+                friendMap.put(friendId, friendBubbles);
+            }
+            Log.runtime(TAG, "加载能量球索引：" + friendMap.size() + "个好友");
+        } catch (JSONException | NumberFormatException e) {
+            Log.printStackTrace(TAG, "加载能量球索引失败", e);
+            friendMap.clear();
+            lastFullSweepTime = 0;
+        }
+    }
+
+    /**
+     * 保存当前账号的索引
+     */
+    public synchronized void save() {
+        if (userId == null) {
+            return;
+        }
+        try {
+            JSONObject friends = new JSONObject();
+            for (Map.Entry<String, FriendBubbles> entry : friendMap.entrySet()) {
+                FriendBubbles friendBubbles = entry.getValue();
+                JSONObject bubbles = new JSONObject();
+                for (Map.Entry<Long, Long> bubble : friendBubbles.bubbles.entrySet()) {
+                    bubbles.put(String.valueOf(bubble.getKey()), bubble.getValue());
+                }
+                JSONObject friend = new JSONObject();
+                friend.put("lastSeen", friendBubbles.lastSeen);
+                friend.put("bubbles", bubbles);
+                friends.put(entry.getKey(), friend);
+            }
+            JSONObject jo = new JSONObject();
+            jo.put("lastFullSweepTime", lastFullSweepTime);
+            jo.put("friends", friends);
+            Files.write2File(jo.toString(), Files.getBubbleIndexFile(userId));
+        } catch (JSONException e) {
+            Log.printStackTrace(TAG, "保存能量球索引失败", e);
+        }
+    }
+
+    /**
+     * 查看好友主页后重置该好友的记录，之后通过 {@link #record} 写入本次看到的能量球
+     *
+     * @param friendId 好友ID
+     */
+    public void reset(String friendId) {
+        friendMap.put(friendId, new FriendBubbles(System.currentTimeMillis()));
+    }
+
+    /**
+     * 记录好友未成熟的能量球
+     *
+     * @param friendId    好友ID
+     * @param bubbleId    能量球ID，来自收取标记时为 0
+     * @param produceTime 成熟时间（服务器时间）
+     */
+    public void record(String friendId, long bubbleId, long produceTime) {
+        friendMap.computeIfAbsent(friendId, k -> new FriendBubbles(System.currentTimeMillis())).bubbles.put(bubbleId, produceTime);
+    }
+
+    /**
+     * 由排行榜或 fillUserRobFlag 的收取标记更新好友记录
+     *
+     * @param friendObj 带收取标记的好友对象
+     */
+    public void recordFlag(JSONObject friendObj) {
+        if (!friendObj.has("canCollectEnergy")) {
+            return;
+        }
+        String friendId = friendObj.optString("userId");
+        reset(friendId);
+        long canCollectLaterTime = friendObj.optLong("canCollectLaterTime");
+        if (friendObj.optBoolean("canCollectEnergy") && canCollectLaterTime > 0) {
+            record(friendId, 0, canCollectLaterTime);
+        }
+    }
+
+    /**
+     * 获取好友最早的能量球成熟时间
+     *
+     * @param friendId 好友ID
+     * @return 成熟时间（服务器时间），无记录或没有未收取的能量球时返回 null
+     */
+    public Long getNextProduceTime(String friendId) {
+        FriendBubbles friendBubbles = friendMap.get(friendId);
+        if (friendBubbles == null) {
+            return null;
+        }
+        Long next = null;
+        for (Long produceTime : friendBubbles.bubbles.values()) {
+            if (next == null || produceTime < next) {
+                next = produceTime;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * 好友是否需要查询：无记录，或有能量球已成熟、将在检查间隔内成熟
+     *
+     * @param friendId  好友ID
+     * @param serverNow 当前服务器时间
+     * @param window    检查间隔（毫秒）
+     * @return 需要查询返回 true
+     */
+    public boolean isDue(String friendId, long serverNow, long window) {
+        if (!friendMap.containsKey(friendId)) {
+            return true;
+        }
+        Long next = getNextProduceTime(friendId);
+        return next != null && next - serverNow < window;
+    }
+
+    /**
+     * 是否到了完整巡护的时间
+     *
+     * @param now      当前时间
+     * @param interval 完整巡护间隔（毫秒），不大于 0 时每轮都完整巡护
+     * @return 需要完整巡护返回 true
+     */
+    public boolean isFullSweepDue(long now, long interval) {
+        return interval <= 0 || now - lastFullSweepTime >= interval;
+    }
+
+    /**
+     * 记录完整巡护完成
+     *
+     * @param now 当前时间
+     */
+    public void markFullSweep(long now) {
+        lastFullSweepTime = now;
+    }
+
+    private static class FriendBubbles {
+        private final long lastSeen;
+        /**
+         * 能量球ID -> 成熟时间
+         */
+        private final Map<Long, Long> bubbles = new ConcurrentHashMap<>();
+
+        private FriendBubbles(long lastSeen) {
+            this.lastSeen = lastSeen;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package fansirsqi.xposed.sesame.task.antForest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * 主页能量球解析，只依赖主页响应与检查窗口，不读取运行时配置和账号状态。
+ * AntForest 收取能量与基准测试共用此实现。
+ */
+final class BubbleParser {
+
+    /**
+     * 收取状态的枚举类型
+     */
+    enum CollectStatus {AVAILABLE, WAITING, INSUFFICIENT, ROBBED}
+
+    /**
+     * 检查窗口内将要成熟的能量球
+     *
+     * @param bubbleId    能量球ID
+     * @param produceTime 成熟时间（服务器时间）
+     */
+    record WaitingBubble(long bubbleId, long produceTime) {
+    }
+
+    /**
+     * 能量球解析回调
+     */
+    interface BubbleListener {
+        /**
+         * 每个能量球分类后回调，用于记录成熟时间等附加处理
+         *
+         * @param bubbleId    能量球ID
+         * @param produceTime 成熟时间（服务器时间）
+         * @param status      收取状态
+         * @param waiting     是否已加入等待成熟列表
+         */
+        void onBubble(long bubbleId, long produceTime, CollectStatus status, boolean waiting);
+    }
+
+    private BubbleParser() {
+    }
+
+    /**
+     * 提取能量球状态
+     *
+     * @param userHomeObj      用户主页的JSON对象
+     * @param serverTime       服务器时间
+     * @param window           等待成熟的窗口（毫秒），成熟时间在窗口内的能量球加入等待列表
+     * @param availableBubbles 可收集的能量球ID列表
+     * @param waitingBubbles   等待成熟的能量球列表
+     * @param listener         每个能量球的回调，可为 null
+     * @throws JSONException JSON解析异常
+     */
+    static void extractBubbleInfo(JSONObject userHomeObj, long serverTime, long window, List<Long> availableBubbles, List<WaitingBubble> waitingBubbles, BubbleListener listener) throws JSONException {
+        if (!userHomeObj.has("bubbles")) return;
+        JSONArray jaBubbles = userHomeObj.getJSONArray("bubbles");
+        for (int i = 0; i < jaBubbles.length(); i++) {
+            JSONObject bubble = jaBubbles.getJSONObject(i);
+            long bubbleId = bubble.getLong("id");
+            long produceTime = bubble.getLong("produceTime");//成熟时间
+            String statusStr = bubble.getString("collectStatus");
+            CollectStatus status = CollectStatus.valueOf(statusStr);
+            boolean waiting = false;
+            switch (status) {
+                case AVAILABLE:
+                    availableBubbles.add(bubbleId);
+                    break;
+                case WAITING://此处适合增加加速卡的处理，但是需要注意 需要 userid==selfId
+                    if (window > produceTime - serverTime) {
+                        waitingBubbles.add(new WaitingBubble(bubbleId, produceTime));
+                        waiting = true;
+                    }
+                    break;
+            }
+            if (listener != null) {
+                listener.onBubble(bubbleId, produceTime, status, waiting);
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package fansirsqi.xposed.sesame.task.antForest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fansirsqi.xposed.sesame.util.Files;
+import fansirsqi.xposed.sesame.util.Log;
+
+/**
+ * 好友能量球成熟时间预测，按账号持久化。
+ * 每个好友维护两部分统计：相邻能量球成熟时间间隔的指数加权平均（EWMA），以及成熟时间落在一天中各小时的衰减直方图。
+ * 预测时先按上次成熟时间加平均间隔推算，再顺延到该好友常出现能量球的小时，
+ * 用于在检查间隔之外提前唤醒查询，以及决定非完整巡护时是否查询该好友。
+ */
+public class BubblePredictor {
+    private static final String TAG = BubblePredictor.class.getSimpleName();
+    /**
+     * 开始预测所需的最少样本数
+     */
+    private static final int MIN_SAMPLES = 5;
+    /**
+     * 间隔平均的平滑系数
+     */
+    private static final double ALPHA = 0.3;
+    /**
+     * 每次新样本时直方图的衰减系数，约 50 个样本后旧数据权重减半
+     */
+    private static final double DECAY = 0.986;
+    /**
+     * 短于该间隔的两个能量球视为同一批产生，不计入间隔（毫秒）
+     */
+    private static final long MIN_GAP = 60 * 1000L;
+    /**
+     * 长于该间隔视为统计中断，不计入间隔（毫秒）
+     */
+    private static final long MAX_GAP = 3 * 24 * 60 * 60 * 1000L;
+    /**
+     * 每个好友记住的最近能量球ID数量，用于去重
+     */
+    private static final int RECENT_BUBBLES = 16;
+    private static final long HOUR = 60 * 60 * 1000L;
+    private final Map<String, Model> modelMap = new ConcurrentHashMap<>();
+    private String userId;
+
+    /**
+     * 加载账号的模型，账号未变化时不重复加载
+     *
+     * @param userId 账号ID
+     */
+    public synchronized void load(String userId) {
+        if (userId == null || Objects.equals(this.userId, userId)) {
+            return;
+        }
+        this.userId = userId;
+        modelMap.clear();
+        String str = Files.readFromFile(Files.getBubbleModelFile(userId));
+        if (str.isEmpty()) {
+            return;
+        }
+        try {
+            JSONObject jo = new JSONObject(str);
+            Iterator<String> ids = jo.keys();
+            while (ids.hasNext()) {
+                String friendId = ids.next();
+                modelMap.put(friendId, Model.fromJson(jo.getJSONObject(friendId)));
+            }
+        } catch (JSONException e) {
+            Log.printStackTrace(TAG, "加载能量球预测模型失败", e);
+            modelMap.clear();
+        }
+    }
+
+    /**
+     * 保存当前账号的模型
+     */
+    public synchronized void save() {
+        if (userId == null) {
+            return;
+        }
+        try {
+            JSONObject jo = new JSONObject();
+            for (Map.Entry<String, Model> entry : modelMap.entrySet()) {
+                jo.put(entry.getKey(), entry.getValue().toJson());
+            }
+            Files.write2File(jo.toString(), Files.getBubbleModelFile(userId));
+        } catch (JSONException e) {
+            Log.printStackTrace(TAG, "保存能量球预测模型失败", e);
+        }
+    }
+
+    /**
+     * 记录在好友主页看到的能量球，同一能量球只记录一次
+     *
+     * @param friendId    好友ID
+     * @param bubbleId    能量球ID
+     * @param produceTime 成熟时间（服务器时间）
+     */
+    public void observe(String friendId, long bubbleId, long produceTime) {
+        modelMap.computeIfAbsent(friendId, k -> new Model()).observe(bubbleId, produceTime);
+    }
+
+    /**
+     * 预测好友在指定时间之后的下一个能量球成熟时间
+     *
+     * @param friendId 好友ID
+     * @param now      当前服务器时间
+     * @return 预测的成熟时间（服务器时间），样本不足时返回 -1
+     */
+    public long predictNext(String friendId, long now) {
+        Model model = modelMap.get(friendId);
+        return model == null ? -1 : model.predictNext(now);
+    }
+
+    /**
+     * 好友是否预计在检查间隔内有能量球成熟
+     *
+     * @param friendId 好友ID
+     * @param now      当前服务器时间
+     * @param window   检查间隔（毫秒）
+     * @return 预计成熟返回 true
+     */
+    public boolean isLikelyDue(String friendId, long now, long window) {
+        long next = predictNext(friendId, now);
+        return next >= 0 && next - now < window;
+    }
+
+    /**
+     * 获取有模型的好友ID
+     *
+     * @return 好友ID
+     */
+    public Iterable<String> getFriendIds() {
+        return modelMap.keySet();
+    }
+
+    private static class Model {
+        private long lastProduceTime = 0;
+        private double ewmaInterval = 0;
+        private int samples = 0;
+        private final double[] hourWeights = new double[24];
+        private final Deque<Long> recentBubbleIds = new ArrayDeque<>();
+
+        private synchronized void observe(long bubbleId, long produceTime) {
+            if (recentBubbleIds.contains(bubbleId)) {
+                return;
+            }
+            recentBubbleIds.addLast(bubbleId);
+            if (recentBubbleIds.size() > RECENT_BUBBLES) {
+                recentBubbleIds.removeFirst();
+            }
+            for (int i = 0; i < hourWeights.length; i++) {
+                hourWeights[i] *= DECAY;
+            }
+            hourWeights[hourOf(produceTime)] += 1;
+            long gap = produceTime - lastProduceTime;
+            if (lastProduceTime > 0 && gap >= MIN_GAP && gap <= MAX_GAP) {
+                ewmaInterval = ewmaInterval <= 0 ? gap : ALPHA * gap + (1 - ALPHA) * ewmaInterval;
+            }
+            if (produceTime > lastProduceTime) {
+                lastProduceTime = produceTime;
+            }
+            samples++;
+        }
+
+        private synchronized long predictNext(long now) {
+            if (samples < MIN_SAMPLES || ewmaInterval <= 0 || lastProduceTime <= 0) {
+                return -1;
+            }
+            long interval = (long) ewmaInterval;
+            long next = lastProduceTime + interval;
+            if (next < now) {
+                next += ((now - next) / interval + 1) * interval;
+            }
+            // 顺延到能量球常出现的小时，最多顺延一天
+            double threshold = 0;
+            for (double weight : hourWeights) {
+                threshold += weight;
+            }
+            threshold = threshold / hourWeights.length / 2;
+            for (int i = 0; i < 24 && hourWeights[hourOf(next)] < threshold; i++) {
+                next = next - next % HOUR + HOUR;
+            }
+            return next;
+        }
+
+        private static int hourOf(long time) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(time);
+            return calendar.get(Calendar.HOUR_OF_DAY);
+        }
+
+        private synchronized JSONObject toJson() throws JSONException {
+            JSONObject jo = new JSONObject();
+            jo.put("last", lastProduceTime);
+            jo.put("ewma", (long) ewmaInterval);
+            jo.put("samples", samples);
+            JSONArray hours = new JSONArray();
+            for (double weight : hourWeights) {
+                hours.put(Math.round(weight * 1000) / 1000.0);
+            }
+            jo.put("hours", hours);
+            jo.put("recent", new JSONArray(recentBubbleIds));
+            return jo;
+        }
+
+        private static Model fromJson(JSONObject jo) {
+            Model model = new Model();
+            model.lastProduceTime = jo.optLong("last");
+            model.ewmaInterval = jo.optLong("ewma");
+            model.samples = jo.optInt("samples");
+            JSONArray hours = jo.optJSONArray("hours");
+            if (hours != null) {
+                for (int i = 0; i < Math.min(hours.length(), model.hourWeights.length); i++) {
+                    model.hourWeights[i] = hours.optDouble(i, 0);
+                }
+            }
+            JSONArray recent = jo.optJSONArray("recent");
+            if (recent != null) {
+                for (int i = 0; i < recent.length(); i++) {
+                    model.recentBubbleIds.addLast(recent.optLong(i));
+                }
+            }
+            return model;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package fansirsqi.xposed.sesame.task.antForest;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import fansirsqi.xposed.sesame.util.Files;
+import fansirsqi.xposed.sesame.util.Log;
+import fansirsqi.xposed.sesame.util.ResChecker;
+
+/**
+ * 好友能量排行榜增量同步，按账号持久化上次完整排行榜的好友列表。
+ * 每轮只查询排行榜头部（带收取、帮收标记的好友），不再返回全部好友 totalDatas；
+ * 到达完整同步间隔、没有缓存，或头部出现缓存中没有的好友（好友列表已变化）时，重新查询完整排行榜。
+ */
+public class EnergyRankingSync {
+    private static final String TAG = EnergyRankingSync.class.getSimpleName();
+    private String userId;
+    /**
+     * 上次完整排行榜的好友ID，按排名顺序
+     */
+    private final List<String> friendIds = new ArrayList<>();
+    private final Set<String> friendIdSet = new HashSet<>();
+    private long lastFullSyncTime = 0;
+
+    /**
+     * 加载账号的排行榜缓存，账号未变化时不重复加载
+     *
+     * @param userId 账号ID
+     */
+    public synchronized void load(String userId) {
+        if (userId == null || Objects.equals(this.userId, userId)) {
+            return;
+        }
+        this.userId = userId;
+        setFriendIds(new JSONArray(), 0);
+        String str = Files.readFromFile(Files.getEnergyRankingFile(userId));
+        if (str.isEmpty()) {
+            return;
+        }
+        try {
+            JSONObject jo = new JSONObject(str);
+            setFriendIds(jo.optJSONArray("friendIds"), jo.optLong("lastFullSyncTime"));
+        } catch (JSONException e) {
+            Log.printStackTrace(TAG, "加载排行榜缓存失败", e);
+            setFriendIds(new JSONArray(), 0);
+        }
+    }
+
+    /**
+     * 保存当前账号的排行榜缓存
+     */
+    public synchronized void save() {
+        if (userId == null) {
+            return;
+        }
+        try {
+            JSONObject jo = new JSONObject();
+            jo.put("lastFullSyncTime", lastFullSyncTime);
+            jo.put("friendIds", new JSONArray(friendIds));
+            Files.write2File(jo.toString(), Files.getEnergyRankingFile(userId));
+        } catch (JSONException e) {
+            Log.printStackTrace(TAG, "保存排行榜缓存失败", e);
+        }
+    }
+
+    /**
+     * 同步排行榜
+     *
+     * @param interval 完整同步间隔（毫秒），不大于 0 时每轮完整同步
+     * @return 排行榜头部与全部好友ID，查询失败返回 null
+     */
+    public synchronized Ranking sync(long interval) throws JSONException {
+        long now = System.currentTimeMillis();
+        if (!friendIds.isEmpty() && interval > 0 && now - lastFullSyncTime < interval) {
+            JSONObject head = new JSONObject(AntForestRpcCall.queryEnergyRanking(false));
+            if (!ResChecker.checkRes(TAG, head)) {
+                Log.error(TAG, "获取好友排行榜失败: " + head.optString("resultDesc"));
+                return null;
+            }
+            JSONArray friendRanking = head.optJSONArray("friendRanking");
+            String newFriendId = findUnknownFriend(friendRanking);
+            if (newFriendId == null) {
+                return new Ranking(friendRanking, new ArrayList<>(friendIds), 1, false);
+            }
+            Log.runtime(TAG, "排行榜出现新好友，重新查询完整排行榜");
+            Ranking ranking = syncFull(now);
+            return ranking == null ? null : new Ranking(ranking.friendRanking, ranking.friendIds, 2, true);
+        }
+        return syncFull(now);
+    }
+
+    private Ranking syncFull(long now) throws JSONException {
+        JSONObject full = new JSONObject(AntForestRpcCall.queryEnergyRanking(true));
+        if (!ResChecker.checkRes(TAG, full)) {
+            Log.error(TAG, "获取好友排行榜失败: " + full.optString("resultDesc"));
+            return null;
+        }
+        JSONArray totalDatas = full.optJSONArray("totalDatas");
+        if (totalDatas != null) {
+            JSONArray ids = new JSONArray();
+            for (int i = 0; i < totalDatas.length(); i++) {
+                String friendId = totalDatas.getJSONObject(i).optString("userId");
+                if (!friendId.isEmpty()) {
+                    ids.put(friendId);
+                }
+            }
+            setFriendIds(ids, now);
+            Log.runtime(TAG, "完整排行榜同步：" + friendIds.size() + "个好友");
+        }
+        return new Ranking(full.optJSONArray("friendRanking"), new ArrayList<>(friendIds), 1, true);
+    }
+
+    private String findUnknownFriend(JSONArray friendRanking) {
+        if (friendRanking == null) {
+            return null;
+        }
+        for (int i = 0; i < friendRanking.length(); i++) {
+            String friendId = friendRanking.optJSONObject(i) == null ? "" : friendRanking.optJSONObject(i).optString("userId");
+            if (!friendId.isEmpty() && !friendIdSet.contains(friendId) && !Objects.equals(friendId, userId)) {
+                return friendId;
+            }
+        }
+        return null;
+    }
+
+    private void setFriendIds(JSONArray ids, long syncTime) {
+        friendIds.clear();
+        friendIdSet.clear();
+        if (ids != null) {
+            for (int i = 0; i < ids.length(); i++) {
+                String friendId = ids.optString(i);
+                if (!friendId.isEmpty() && friendIdSet.add(friendId)) {
+                    friendIds.add(friendId);
+                }
+            }
+        }
+        lastFullSyncTime = syncTime;
+    }
+
+    /**
+     * 同步结果
+     */
+    public static class Ranking {
+        /**
+         * 排行榜头部，带收取标记
+         */
+        public final JSONArray friendRanking;
+        /**
+         * 全部好友ID，按上次完整排行榜的顺序
+         */
+        public final List<String> friendIds;
+        /**
+         * 本次同步发起的请求数
+         */
+        public final int requestCount;
+        /**
+         * 是否为完整同步
+         */
+        public final boolean full;
+
+        private Ranking(JSONArray friendRanking, List<String> friendIds, int requestCount, boolean full) {
+            this.friendRanking = friendRanking;
+            this.friendIds = friendIds;
+            this.requestCount = requestCount;
+            this.full = full;
+        }
+    }
+}
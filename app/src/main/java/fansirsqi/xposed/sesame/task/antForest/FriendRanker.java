@@ -0,0 +1,134 @@
+package fansirsqi.xposed.sesame.task.antForest;
+
+import org.json.JSONObject;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import fansirsqi.xposed.sesame.entity.FriendWatch;
+import fansirsqi.xposed.sesame.hook.rpc.clock.ServerClock;
+
+/**
+ * 好友巡护顺序评分，按预期收益从高到低访问好友。
+ * 先按档位排序：当前可收取 &gt; 上次看到的能量球在检查间隔内成熟 &gt; 其他；
+ * 同一档位内按历史收取量排序，即好友统计中本周收取与开始统计以来的周均收取之和。
+ */
+public class FriendRanker {
+    private static final int TIER_COLLECTABLE = 2;
+    private static final int TIER_MATURING = 1;
+    private static final int TIER_NONE = 0;
+    private static final long WEEK = 7 * 24 * 60 * 60 * 1000L;
+    /**
+     * 好友最近一次访问时看到的能量球
+     */
+    private final BubbleIndex bubbleIndex;
+
+    public FriendRanker(BubbleIndex bubbleIndex) {
+        this.bubbleIndex = bubbleIndex;
+    }
+
+    /**
+     * 对排行榜中带收取标记的好友排序
+     *
+     * @param friends 排行榜或 fillUserRobFlag 返回的好友对象
+     * @param window  检查间隔（毫秒），在此时间内成熟的能量球视为本轮可收取
+     * @return 排序后的好友对象
+     */
+    public List<JSONObject> rankFriends(Collection<JSONObject> friends, long window) {
+        List<Scored<JSONObject>> scoredList = new ArrayList<>(friends.size());
+        long serverNow = ServerClock.serverNow();
+        for (JSONObject friend : friends) {
+            String userId = friend.optString("userId");
+            int tier = getFlagTier(friend, serverNow, window);
+            scoredList.add(new Scored<>(friend, Math.max(tier, getBubbleTier(userId, serverNow, window)), getHistoryYield(userId)));
+        }
+        return sort(scoredList);
+    }
+
+    /**
+     * 对尚无收取标记的好友排序，决定批量查询标记的先后
+     *
+     * @param userIds 好友ID
+     * @param window  检查间隔（毫秒）
+     * @return 排序后的好友ID
+     */
+    public List<String> rank(Collection<String> userIds, long window) {
+        List<Scored<String>> scoredList = new ArrayList<>(userIds.size());
+        long serverNow = ServerClock.serverNow();
+        for (String userId : userIds) {
+            scoredList.add(new Scored<>(userId, getBubbleTier(userId, serverNow, window), getHistoryYield(userId)));
+        }
+        return sort(scoredList);
+    }
+
+    private int getFlagTier(JSONObject friend, long serverNow, long window) {
+        if (!friend.optBoolean("canCollectEnergy")) {
+            return TIER_NONE;
+        }
+        long canCollectLaterTime = friend.optLong("canCollectLaterTime");
+        if (canCollectLaterTime <= 0) {
+            return TIER_NONE;
+        }
+        if (canCollectLaterTime <= serverNow) {
+            return TIER_COLLECTABLE;
+        }
+        return canCollectLaterTime - serverNow < window ? TIER_MATURING : TIER_NONE;
+    }
+
+    private int getBubbleTier(String userId, long serverNow, long window) {
+        Long produceTime = bubbleIndex.getNextProduceTime(userId);
+        if (produceTime == null) {
+            return TIER_NONE;
+        }
+        return produceTime <= serverNow ? TIER_COLLECTABLE : produceTime - serverNow < window ? TIER_MATURING : TIER_NONE;
+    }
+
+    /**
+     * 历史收取量：本周收取加开始统计以来的周均收取，开始时间无法解析时只取本周收取
+     */
+    private double getHistoryYield(String userId) {
+        JSONObject friendWatch = FriendWatch.getJoFriendWatch().optJSONObject(userId);
+        if (friendWatch == null) {
+            return 0;
+        }
+        double yield = friendWatch.optInt("weekGet", 0);
+        int allGet = friendWatch.optInt("allGet", 0);
+        String startTime = friendWatch.optString("startTime");
+        if (allGet > 0 && !startTime.isEmpty()) {
+            try {
+                Date startDate = DateFormat.getDateInstance().parse(startTime);
+                if (startDate != null) {
+                    long weeks = Math.max((System.currentTimeMillis() - startDate.getTime()) / WEEK, 1);
+                    yield += (double) allGet / weeks;
+                }
+            } catch (ParseException ignored) {
+            }
+        }
+        return yield;
+    }
+
+    private static <T> List<T> sort(List<Scored<T>> scoredList) {
+        scoredList.sort((a, b) -> a.tier != b.tier ? Integer.compare(b.tier, a.tier) : Double.compare(b.yield, a.yield));
+        List<T> list = new ArrayList<>(scoredList.size());
+        for (Scored<T> scored : scoredList) {
+            list.add(scored.value);
+        }
+        return list;
+    }
+
+    private static class Scored<T> {
+        private final T value;
+        private final int tier;
+        private final double yield;
+
+        private Scored(T value, int tier, double yield) {
+            this.value = value;
+            this.tier = tier;
+            this.yield = yield;
+        }
+    }
+}
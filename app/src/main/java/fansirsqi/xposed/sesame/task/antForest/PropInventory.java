@@ -0,0 +1,183 @@
+package fansirsqi.xposed.sesame.task.antForest;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fansirsqi.xposed.sesame.util.Log;
+import fansirsqi.xposed.sesame.util.ResChecker;
+
+/**
+ * 森林道具库存，缓存背包和使用中道具的结束时间。
+ * 背包在使用道具成功后本地扣减，只在超过有效期、兑换获得新道具或使用失败（本地库存与服务器不一致）时重新查询；
+ * 使用中道具的结束时间来自主页响应，本地使用道具后先记为估计值，估计的结束时间过后才需要重新查询主页确认。
+ */
+public class PropInventory {
+    private static final String TAG = PropInventory.class.getSimpleName();
+    /**
+     * 背包缓存有效期（毫秒）
+     */
+    private static final long BAG_MAX_AGE = 10 * 60 * 1000L;
+    /**
+     * 当前账号
+     */
+    private String userId;
+    private JSONObject bag;
+    private long bagTime = 0;
+    /**
+     * 道具分组（propGroup）-> 结束时间
+     */
+    private final Map<String, Long> endTimeMap = new ConcurrentHashMap<>();
+    /**
+     * 结束时间为本地估计值的道具分组
+     */
+    private final Set<String> estimatedGroups = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 绑定账号，账号变化时清空库存
+     *
+     * @param userId 账号ID
+     */
+    public synchronized void bind(String userId) {
+        if (Objects.equals(this.userId, userId)) {
+            return;
+        }
+        this.userId = userId;
+        bag = null;
+        bagTime = 0;
+        endTimeMap.clear();
+        estimatedGroups.clear();
+    }
+
+    /**
+     * 获取背包，缓存有效时不发起请求
+     *
+     * @return 背包对象，查询失败返回 null
+     */
+    public synchronized JSONObject getBag() {
+        long now = System.currentTimeMillis();
+        if (bag != null && now - bagTime < BAG_MAX_AGE) {
+            return bag;
+        }
+        try {
+            JSONObject bagObject = new JSONObject(AntForestRpcCall.queryPropList(false));
+            if (ResChecker.checkRes(TAG, bagObject)) {
+                bag = bagObject;
+                bagTime = now;
+                return bag;
+            }
+            Log.error(TAG, "获取背包信息失败: " + bagObject);
+        } catch (Exception e) {
+            Log.printStackTrace(TAG, "获取背包信息失败:", e);
+        }
+        return null;
+    }
+
+    /**
+     * 背包缓存失效，下次获取时重新查询
+     */
+    public synchronized void invalidateBag() {
+        bag = null;
+    }
+
+    /**
+     * 使用道具成功后本地扣减背包
+     *
+     * @param propVO 使用的背包道具，使用的是 propIdList 中的第一个
+     */
+    public synchronized void onConsumed(JSONObject propVO) {
+        if (bag == null) {
+            return;
+        }
+        JSONArray forestPropVOList = bag.optJSONArray("forestPropVOList");
+        JSONObject propConfigVO = propVO.optJSONObject("propConfigVO");
+        if (forestPropVOList == null || propConfigVO == null) {
+            invalidateBag();
+            return;
+        }
+        String propType = propConfigVO.optString("propType");
+        for (int i = 0; i < forestPropVOList.length(); i++) {
+            JSONObject forestPropVO = forestPropVOList.optJSONObject(i);
+            JSONObject currentConfigVO = forestPropVO == null ? null : forestPropVO.optJSONObject("propConfigVO");
+            if (currentConfigVO == null || !propType.equals(currentConfigVO.optString("propType"))) {
+                continue;
+            }
+            JSONArray propIdList = forestPropVO.optJSONArray("propIdList");
+            if (propIdList != null && propIdList.length() > 0) {
+                propIdList.remove(0);
+            }
+            int holdsNum = forestPropVO.optInt("holdsNum", 1) - 1;
+            if (holdsNum <= 0 || propIdList == null || propIdList.length() == 0) {
+                forestPropVOList.remove(i);
+            } else {
+                try {
+                    forestPropVO.put("holdsNum", holdsNum);
+                } catch (Exception e) {
+                    invalidateBag();
+                }
+            }
+            return;
+        }
+        // 背包中没有该道具，本地库存与服务器不一致
+        invalidateBag();
+    }
+
+    /**
+     * 记录主页返回的使用中道具的结束时间
+     *
+     * @param propGroup 道具分组
+     * @param endTime   结束时间（毫秒）
+     */
+    public void setEndTime(String propGroup, long endTime) {
+        endTimeMap.put(propGroup, endTime);
+        estimatedGroups.remove(propGroup);
+    }
+
+    /**
+     * 记录本地使用道具后估计的结束时间
+     *
+     * @param propGroup 道具分组
+     * @param endTime   估计的结束时间（毫秒）
+     */
+    public void setEstimatedEndTime(String propGroup, long endTime) {
+        endTimeMap.put(propGroup, endTime);
+        estimatedGroups.add(propGroup);
+    }
+
+    /**
+     * 获取道具结束时间
+     *
+     * @param propGroup 道具分组
+     * @return 结束时间（毫秒），没有使用记录时为 0
+     */
+    public long getEndTime(String propGroup) {
+        Long endTime = endTimeMap.get(propGroup);
+        return endTime == null ? 0 : endTime;
+    }
+
+    /**
+     * 主页已刷新，所有结束时间以服务器为准
+     */
+    public void confirmEndTimes() {
+        estimatedGroups.clear();
+    }
+
+    /**
+     * 是否有估计的结束时间已过，需要重新查询主页确认
+     *
+     * @param now 当前时间（毫秒）
+     * @return 需要刷新返回 true
+     */
+    public boolean needRefreshEndTimes(long now) {
+        for (String propGroup : estimatedGroups) {
+            if (getEndTime(propGroup) <= now) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
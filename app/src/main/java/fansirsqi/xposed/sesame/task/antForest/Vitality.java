@@ -1,8 +1,6 @@
 package fansirsqi.xposed.sesame.task.antForest;
 import org.json.JSONArray;
 import org.json.JSONObject;
-import java.util.HashMap;
-import java.util.Map;
 import fansirsqi.xposed.sesame.entity.VitalityStore.ExchangeStatus;
 import fansirsqi.xposed.sesame.util.Log;
 import fansirsqi.xposed.sesame.util.maps.IdMapManager;
@@ -17,7 +15,10 @@ import fansirsqi.xposed.sesame.data.Status;
  */
 public class Vitality {
     private static final String TAG = Vitality.class.getSimpleName();
-    static Map<String, JSONObject> skuInfo = new HashMap<>();
+    /**
+     * 活力值商店商品目录，当天有效时兑换判断不再查询商品列表
+     */
+    static final VitalityCatalog catalog = new VitalityCatalog();
     public static JSONArray ItemListByType(String labelType) {
         JSONArray itemInfoVOList = null;
         try {
@@ -45,12 +46,19 @@ public class Vitality {
     }
     public static void initVitality(String labelType) {
         try {
+            catalog.load(UserMap.getCurrentUid());
+            if (catalog.isValid()) {
+                return;
+            }
             JSONArray itemInfoVOList = ItemListByType(labelType);
             if (itemInfoVOList != null) {
+                catalog.clear();
                 for (int i = 0; i < itemInfoVOList.length(); i++) {
                     JSONObject itemInfoVO = itemInfoVOList.getJSONObject(i);
                     handleVitalityItem(itemInfoVO);
                 }
+                catalog.markRefreshed();
+                catalog.save();
             } else {
                 Log.error(TAG, "活力兑换🍃初始化失败！");
             }
@@ -71,7 +79,7 @@ public class Vitality {
                 if (!skuModel.has("spuId")) {
                     skuModel.put("spuId", spuId);
                 }
-                skuInfo.put(skuId, skuModel);
+                catalog.put(skuId, skuModel);
                 IdMapManager.getInstance(VitalityRewardsMap.class).add(skuId, skuName);
             }
             IdMapManager.getInstance(VitalityRewardsMap.class).save(UserMap.getCurrentUid());
@@ -91,10 +99,11 @@ public class Vitality {
                 if (!skuModel.has("spuId")) {
                     skuModel.put("spuId", spuId);
                 }
-                skuInfo.put(skuId, skuModel);
+                catalog.put(skuId, skuModel);
                 IdMapManager.getInstance(VitalityRewardsMap.class).add(skuId, skuName);
             }
             IdMapManager.getInstance(VitalityRewardsMap.class).save(UserMap.getCurrentUid());
+            catalog.save();
         } catch (Throwable th) {
             Log.runtime(TAG, "handleItemDetail err:");
             Log.printStackTrace(TAG, th);
@@ -108,10 +117,8 @@ public class Vitality {
      * exchangedCount == 0......
      */
     public static Boolean handleVitalityExchange(String skuId) {
-        if (skuInfo.isEmpty()) {
-            initVitality("SC_ASSETS");
-        }
-        JSONObject sku = skuInfo.get(skuId);
+        initVitality("SC_ASSETS");
+        JSONObject sku = catalog.get(skuId);
         if (sku == null) {
             Log.record(TAG,"活力兑换🍃找不到要兑换的权益！");
             return false;
@@ -162,7 +169,10 @@ public class Vitality {
     private static Boolean VitalityExchange(String spuId, String skuId) {
         try {
             JSONObject jo = new JSONObject(AntForestRpcCall.exchangeBenefit(spuId, skuId));
-            return ResChecker.checkRes(TAG, jo);
+            if (ResChecker.checkRes(TAG, jo)) {
+                return true;
+            }
+            catalog.onExchangeFailed(jo);
         } catch (Throwable th) {
             Log.runtime(TAG, "VitalityExchange err:" + spuId + "," + skuId);
             Log.printStackTrace(TAG, th);
@@ -176,12 +186,8 @@ public class Vitality {
      */
     public static JSONObject findSkuInfoBySkuName(String spuName) {
         try {
-            if (skuInfo.isEmpty()) {
-                initVitality("SC_ASSETS");
-            }
-            for (String key : skuInfo.keySet()) {
-                JSONObject sku = skuInfo.get(key);
-                assert sku != null;
+            initVitality("SC_ASSETS");
+            for (JSONObject sku : catalog.values()) {
                 if(sku.getString("skuName").contains(spuName)){
                     return sku;
                 }
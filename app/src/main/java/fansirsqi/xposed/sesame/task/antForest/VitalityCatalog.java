@@ -0,0 +1,151 @@
+package fansirsqi.xposed.sesame.task.antForest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fansirsqi.xposed.sesame.util.Files;
+import fansirsqi.xposed.sesame.util.Log;
+import fansirsqi.xposed.sesame.util.TimeUtil;
+
+/**
+ * 活力值商店商品目录，按账号持久化，当天有效。
+ * 以 skuId 为键保存商品信息（spuId、名称、价格、兑换状态等），兑换判断直接查本地目录；
+ * 跨天或兑换返回库存、价格相关错误时失效，下次使用时重新查询商品列表。
+ */
+public class VitalityCatalog {
+    private static final String TAG = VitalityCatalog.class.getSimpleName();
+    /**
+     * 兑换失败时表示目录已过时的错误关键字
+     */
+    private static final String[] STALE_KEYWORDS = {"STOCK", "PRICE", "库存", "价格", "售罄", "已下架"};
+    /**
+     * skuId -> 商品信息
+     */
+    private final Map<String, JSONObject> skuMap = new ConcurrentHashMap<>();
+    private String userId;
+    /**
+     * 目录的查询日期，与当天不同时目录无效
+     */
+    private String date;
+
+    /**
+     * 加载账号的目录，账号未变化时不重复加载
+     *
+     * @param userId 账号ID
+     */
+    public synchronized void load(String userId) {
+        if (userId == null || Objects.equals(this.userId, userId)) {
+            return;
+        }
+        this.userId = userId;
+        skuMap.clear();
+        date = null;
+        String str = Files.readFromFile(Files.getVitalityCatalogFile(userId));
+        if (str.isEmpty()) {
+            return;
+        }
+        try {
+            JSONObject jo = new JSONObject(str);
+            JSONObject skus = jo.optJSONObject("skus");
+            if (skus == null) {
+                return;
+            }
+            Iterator<String> skuIds = skus.keys();
+            while (skuIds.hasNext()) {
+                String skuId = skuIds.next();
+                skuMap.put(skuId, skus.getJSONObject(skuId));
+            }
+            date = jo.optString("date", null);
+        } catch (JSONException e) {
+            Log.printStackTrace(TAG, "加载活力值商品目录失败", e);
+            skuMap.clear();
+            date = null;
+        }
+    }
+
+    /**
+     * 保存目录
+     */
+    public synchronized void save() {
+        if (userId == null) {
+            return;
+        }
+        try {
+            JSONObject skus = new JSONObject();
+            for (Map.Entry<String, JSONObject> entry : skuMap.entrySet()) {
+                skus.put(entry.getKey(), entry.getValue());
+            }
+            JSONObject jo = new JSONObject();
+            jo.put("date", date);
+            jo.put("skus", skus);
+            Files.write2File(jo.toString(), Files.getVitalityCatalogFile(userId));
+        } catch (JSONException e) {
+            Log.printStackTrace(TAG, "保存活力值商品目录失败", e);
+        }
+    }
+
+    /**
+     * 目录是否当天有效
+     *
+     * @return 有效返回 true
+     */
+    public boolean isValid() {
+        return !skuMap.isEmpty() && TimeUtil.getDateStr().equals(date);
+    }
+
+    /**
+     * 重新查询完整商品列表后标记为当天有效
+     */
+    public synchronized void markRefreshed() {
+        date = TimeUtil.getDateStr();
+    }
+
+    /**
+     * 目录失效，下次使用时重新查询
+     */
+    public synchronized void invalidate() {
+        date = null;
+        Log.runtime(TAG, "活力值商品目录已失效");
+    }
+
+    /**
+     * 兑换失败时根据错误判断目录是否过时，库存或价格相关错误时使目录失效
+     *
+     * @param response 兑换响应
+     */
+    public void onExchangeFailed(JSONObject response) {
+        String error = response.optString("resultCode") + response.optString("resultDesc") + response.optString("desc");
+        for (String keyword : STALE_KEYWORDS) {
+            if (error.toUpperCase().contains(keyword)) {
+                invalidate();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 清空目录，重新查询商品列表成功后调用
+     */
+    public void clear() {
+        skuMap.clear();
+    }
+
+    public void put(String skuId, JSONObject sku) {
+        skuMap.put(skuId, sku);
+    }
+
+    public JSONObject get(String skuId) {
+        return skuMap.get(skuId);
+    }
+
+    public List<JSONObject> values() {
+        return new ArrayList<>(skuMap.values());
+    }
+}
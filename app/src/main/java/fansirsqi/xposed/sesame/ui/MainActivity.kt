@@ -234,6 +234,7 @@ class MainActivity : BaseActivity() {
             menu.add(0, 3, 3, R.string.view_all_log_file)
             menu.add(0, 4, 4, R.string.view_runtim_log_file)
             menu.add(0, 5, 5, R.string.view_capture)
+            menu.add(0, 9, 5, R.string.view_rpc_stats)
             menu.add(0, 6, 6, R.string.extend)
             menu.add(0, 7, 7, R.string.settings)
             if (ViewAppInfo.isApkInDebug) {
@@ -312,6 +313,16 @@ class MainActivity : BaseActivity() {
                 startActivity(captureIt)
             }
 
+            9 -> {
+                var statsData = "file://"
+                statsData += Files.getRpcStatsFile().absolutePath
+                val statsIt = Intent(this, HtmlViewerActivity::class.java)
+                statsIt.putExtra("nextLine", false)
+                statsIt.putExtra("canClear", true)
+                statsIt.data = statsData.toUri()
+                startActivity(statsIt)
+            }
+
             6 ->                 // 扩展功能
                 startActivity(Intent(this, ExtendActivity::class.java))
 
@@ -294,6 +294,22 @@ public class Files {
         return getTargetFileofUser(userId, "friendWatch.json");
     }
 
+    public static File getBubbleIndexFile(String userId) {
+        return getTargetFileofUser(userId, "bubbleIndex.json");
+    }
+
+    public static File getVitalityCatalogFile(String userId) {
+        return getTargetFileofUser(userId, "vitalityCatalog.json");
+    }
+
+    public static File getEnergyRankingFile(String userId) {
+        return getTargetFileofUser(userId, "energyRanking.json");
+    }
+
+    public static File getBubbleModelFile(String userId) {
+        return getTargetFileofUser(userId, "bubbleModel.json");
+    }
+
     public static File getWuaFile() {
         return getTargetFileofDir(MAIN_DIR, "wua.list");
     }
@@ -424,6 +440,10 @@ public class Files {
         return ensureLogFile(getLogFile("error"));
     }
 
+    public static File getRpcStatsFile() {
+        return ensureLogFile(getLogFile("rpc_stats"));
+    }
+
     /**
      * 关闭流对象
      *
@@ -7,6 +7,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 全局线程池管理类
@@ -14,6 +15,70 @@ import java.util.concurrent.TimeUnit;
 public class GlobalThreadPools {
     private static final String TAG = "GlobalThreadPools";
 
+    private static final AtomicInteger rpcThreadCounter = new AtomicInteger(0);
+
+    /**
+     * 异步 RPC 使用的线程池，仅负责发起请求，响应由回调完成
+     */
+    private static volatile ExecutorService rpcExecutor;
+
+    /**
+     * 异步 RPC 重试退避、响应超时使用的调度器
+     */
+    private static volatile ScheduledExecutorService rpcScheduler;
+
+    /**
+     * 获取异步 RPC 线程池
+     *
+     * @return 线程池
+     */
+    public static ExecutorService getRpcExecutor() {
+        if (rpcExecutor == null || rpcExecutor.isShutdown()) {
+            synchronized (GlobalThreadPools.class) {
+                if (rpcExecutor == null || rpcExecutor.isShutdown()) {
+                    rpcExecutor = new ThreadPoolExecutor(0, 16, 30L, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+                        Thread thread = new Thread(r, "RpcAsync-" + rpcThreadCounter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.CallerRunsPolicy());
+                }
+            }
+        }
+        return rpcExecutor;
+    }
+
+    /**
+     * 获取异步 RPC 调度器
+     *
+     * @return 调度器
+     */
+    public static ScheduledExecutorService getRpcScheduler() {
+        if (rpcScheduler == null || rpcScheduler.isShutdown()) {
+            synchronized (GlobalThreadPools.class) {
+                if (rpcScheduler == null || rpcScheduler.isShutdown()) {
+                    rpcScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, "RpcScheduler");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return rpcScheduler;
+    }
+
+    /**
+     * 关闭异步 RPC 使用的线程池
+     */
+    public static void shutdownRpcPools() {
+        synchronized (GlobalThreadPools.class) {
+            shutdownAndAwaitTermination(rpcScheduler, 3, "RpcScheduler");
+            shutdownAndAwaitTermination(rpcExecutor, 3, "RpcAsync");
+            rpcScheduler = null;
+            rpcExecutor = null;
+        }
+    }
+
     /**
      * 使当前线程暂停指定的毫秒数。
      *
@@ -2,12 +2,19 @@ package fansirsqi.xposed.sesame.util;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.util.function.Supplier;
+
+import ch.qos.logback.classic.Level;
 
 import fansirsqi.xposed.sesame.BuildConfig;
 import fansirsqi.xposed.sesame.model.BaseModel;
 
 /**
  * 日志工具类，负责初始化和管理各种类型的日志记录器，并提供日志输出方法。
+ * 每种日志可在运行时单独设置级别；消息拼接开销较大时使用 Supplier 或 {} 占位符的重载，
+ * 日志未启用时不会构建消息字符串。
  */
 public class Log {
     private static final String TAG = "";
@@ -60,6 +67,50 @@ public class Log {
         }
     }
     
+    /**
+     * 设置指定类型日志的级别，如 {@link Level#ERROR} 只输出错误、{@link Level#OFF} 关闭
+     *
+     * @param logType 日志类型
+     * @param level   日志级别
+     */
+    public static void setLevel(LogType logType, Level level) {
+        ((ch.qos.logback.classic.Logger) logType.getLogger()).setLevel(level);
+    }
+
+    /**
+     * 指定类型的普通日志是否会被输出，运行日志和记录日志同时写入系统日志，任一输出即为启用
+     *
+     * @param logType 日志类型
+     * @return true 启用
+     */
+    public static boolean isEnabled(LogType logType) {
+        if ((logType == LogType.RUNTIME || logType == LogType.RECORD) && LogType.SYSTEM.getLogger().isInfoEnabled()) {
+            return true;
+        }
+        if (logType == LogType.RECORD && !BaseModel.getRecordLog().getValue()) {
+            return false;
+        }
+        return logType.getLogger().isInfoEnabled();
+    }
+
+    /**
+     * 延迟构建消息的带标签日志，日志未启用时不调用 Supplier
+     */
+    private static void log(LogType logType, String tag, Supplier<String> message) {
+        if (isEnabled(logType)) {
+            log(logType, tag, message.get());
+        }
+    }
+
+    /**
+     * {} 占位符格式的带标签日志，日志未启用时不格式化参数
+     */
+    private static void log(LogType logType, String tag, String format, Object... args) {
+        if (isEnabled(logType)) {
+            log(logType, tag, MessageFormatter.arrayFormat(format, args).getMessage());
+        }
+    }
+
     /**
      * 记录日志
      */
@@ -83,6 +134,14 @@ public class Log {
         log(LogType.SYSTEM, TAG, msg);
     }
 
+    public static void system(String TAG, Supplier<String> msg) {
+        log(LogType.SYSTEM, TAG, msg);
+    }
+
+    public static void system(String TAG, String format, Object... args) {
+        log(LogType.SYSTEM, TAG, format, args);
+    }
+
     // 运行时日志
     public static void runtime(String msg) {
         log(LogType.RUNTIME, msg);
@@ -92,6 +151,14 @@ public class Log {
         log(LogType.RUNTIME, TAG, msg);
     }
 
+    public static void runtime(String TAG, Supplier<String> msg) {
+        log(LogType.RUNTIME, TAG, msg);
+    }
+
+    public static void runtime(String TAG, String format, Object... args) {
+        log(LogType.RUNTIME, TAG, format, args);
+    }
+
     // 记录日志
     public static void record(String msg) {
         log(LogType.RECORD, msg);
@@ -101,6 +168,14 @@ public class Log {
         log(LogType.RECORD, TAG, msg);
     }
 
+    public static void record(String TAG, Supplier<String> msg) {
+        log(LogType.RECORD, TAG, msg);
+    }
+
+    public static void record(String TAG, String format, Object... args) {
+        log(LogType.RECORD, TAG, format, args);
+    }
+
     // 森林日志
     public static void forest(String msg) {
         log(LogType.FOREST, msg);
@@ -110,6 +185,14 @@ public class Log {
         log(LogType.FOREST, TAG, msg);
     }
 
+    public static void forest(String TAG, Supplier<String> msg) {
+        log(LogType.FOREST, TAG, msg);
+    }
+
+    public static void forest(String TAG, String format, Object... args) {
+        log(LogType.FOREST, TAG, format, args);
+    }
+
     // 农场日志
     public static void farm(String msg) {
         log(LogType.FARM, msg);
@@ -119,6 +202,14 @@ public class Log {
         log(LogType.FARM, TAG, msg);
     }
 
+    public static void farm(String TAG, Supplier<String> msg) {
+        log(LogType.FARM, TAG, msg);
+    }
+
+    public static void farm(String TAG, String format, Object... args) {
+        log(LogType.FARM, TAG, format, args);
+    }
+
     // 其他日志
     public static void other(String msg) {
         log(LogType.OTHER, msg);
@@ -128,6 +219,14 @@ public class Log {
         log(LogType.OTHER, TAG, msg);
     }
 
+    public static void other(String TAG, Supplier<String> msg) {
+        log(LogType.OTHER, TAG, msg);
+    }
+
+    public static void other(String TAG, String format, Object... args) {
+        log(LogType.OTHER, TAG, format, args);
+    }
+
     // 调试日志
     public static void debug(String msg) {
         log(LogType.DEBUG, msg);
@@ -137,6 +236,14 @@ public class Log {
         log(LogType.DEBUG, TAG, msg);
     }
 
+    public static void debug(String TAG, Supplier<String> msg) {
+        log(LogType.DEBUG, TAG, msg);
+    }
+
+    public static void debug(String TAG, String format, Object... args) {
+        log(LogType.DEBUG, TAG, format, args);
+    }
+
     // 错误日志
     public static void error(String msg) {
         log(LogType.ERROR, msg, true);
@@ -146,6 +253,14 @@ public class Log {
         log(LogType.ERROR, TAG, msg);
     }
 
+    public static void error(String TAG, Supplier<String> msg) {
+        log(LogType.ERROR, TAG, msg);
+    }
+
+    public static void error(String TAG, String format, Object... args) {
+        log(LogType.ERROR, TAG, format, args);
+    }
+
     // 捕获日志
     public static void capture(String msg) {
         log(LogType.CAPTURE, msg);
@@ -155,6 +270,14 @@ public class Log {
         log(LogType.CAPTURE, TAG, msg);
     }
 
+    public static void capture(String TAG, Supplier<String> msg) {
+        log(LogType.CAPTURE, TAG, msg);
+    }
+
+    public static void capture(String TAG, String format, Object... args) {
+        log(LogType.CAPTURE, TAG, format, args);
+    }
+
     // 异常堆栈跟踪
     public static void printStackTrace(Throwable th) {
         String stackTrace = "error: " + android.util.Log.getStackTraceString(th);
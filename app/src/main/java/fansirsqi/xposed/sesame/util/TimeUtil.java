@@ -69,6 +69,12 @@ public class TimeUtil {
                     calendar.set(Calendar.MINUTE, Integer.parseInt(timeParts[1]));
                     calendar.set(Calendar.SECOND, 0);
                     calendar.set(Calendar.MILLISECOND, 0);
+                } else if (timeStr.length() == 4 || timeStr.length() == 6) {
+                    // 配置中使用的 HHmm 或 HHmmss 格式，如 0700
+                    calendar.set(Calendar.HOUR_OF_DAY, Integer.parseInt(timeStr.substring(0, 2)));
+                    calendar.set(Calendar.MINUTE, Integer.parseInt(timeStr.substring(2, 4)));
+                    calendar.set(Calendar.SECOND, timeStr.length() == 6 ? Integer.parseInt(timeStr.substring(4, 6)) : 0);
+                    calendar.set(Calendar.MILLISECOND, 0);
                 }
             }
             return calendar;
@@ -178,6 +184,25 @@ public class TimeUtil {
         return checkInTimeRange(System.currentTimeMillis(), timeRange);
     }
 
+    /**
+     * 检查时间戳是否在时间范围内
+     *
+     * @param timeMillis 时间戳
+     * @param timeRange  时间范围，格式为 HHmm-HHmm，如 0700-0730
+     * @return 在范围内返回 true，格式错误返回 false
+     */
+    public static Boolean checkInTimeRange(Long timeMillis, String timeRange) {
+        try {
+            String[] timeRangeArray = timeRange.split("-");
+            if (timeRangeArray.length == 2) {
+                return isAfterOrCompareTimeStr(timeMillis, timeRangeArray[0]) && isBeforeOrCompareTimeStr(timeMillis, timeRangeArray[1]);
+            }
+        } catch (Exception e) {
+            Log.printStackTrace(TAG, e);
+        }
+        return false;
+    }
+
     public static Boolean checkInTimeRange(Long timeMillis, List<String> timeRangeList) {
         for (String timeRange : timeRangeList) {
             if (checkInTimeRange(timeMillis, timeRange)) {
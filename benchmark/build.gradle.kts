@@ -0,0 +1,85 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    toolchain {
+        languageVersion = JavaLanguageVersion.of(17)
+    }
+}
+
+// 从 app 模块同步不依赖 Android 的源码，基准测试直接测量模块实际使用的实现
+// Log、General、BaseModel 等依赖 Android 或 Kotlin 的类在 src/main/java 中提供 JVM 替身
+val appSrc = rootProject.file("app/src/main/java")
+val syncAppSources by tasks.registering(Sync::class) {
+    from(appSrc) {
+        include(
+            "fansirsqi/xposed/sesame/entity/AlipayVersion.java",
+            "fansirsqi/xposed/sesame/entity/RpcEntity.java",
+            "fansirsqi/xposed/sesame/entity/RpcLane.java",
+            "fansirsqi/xposed/sesame/hook/RequestManager.java",
+            "fansirsqi/xposed/sesame/hook/rpc/intervallimit/*.java",
+            "fansirsqi/xposed/sesame/hook/rpc/bridge/BridgeCallbackPool.java",
+            "fansirsqi/xposed/sesame/hook/rpc/bridge/FastJsonAccessor.java",
+            "fansirsqi/xposed/sesame/hook/rpc/bridge/ReplayRpcBridge.java",
+            "fansirsqi/xposed/sesame/hook/rpc/bridge/RpcBridge.java",
+            "fansirsqi/xposed/sesame/hook/rpc/bridge/RpcHedge.java",
+            "fansirsqi/xposed/sesame/hook/rpc/bridge/RpcPayloadLog.java",
+            "fansirsqi/xposed/sesame/hook/rpc/bridge/RpcVersion.java",
+            "fansirsqi/xposed/sesame/hook/rpc/cache/*.java",
+            "fansirsqi/xposed/sesame/hook/rpc/replay/RpcCapture.java",
+            "fansirsqi/xposed/sesame/hook/rpc/stats/*.java",
+            "fansirsqi/xposed/sesame/task/antFarm/AntFarmRpcCall.java",
+            "fansirsqi/xposed/sesame/task/antForest/AntForestRpcCall.java",
+            "fansirsqi/xposed/sesame/task/antForest/BubbleParser.java",
+            "fansirsqi/xposed/sesame/util/GlobalThreadPools.java",
+            "fansirsqi/xposed/sesame/util/JsonUtil.java",
+            "fansirsqi/xposed/sesame/util/RandomUtil.java",
+            "fansirsqi/xposed/sesame/util/ResChecker.java",
+            "fansirsqi/xposed/sesame/util/StringUtil.java",
+            "fansirsqi/xposed/sesame/util/TimeUtil.java",
+        )
+    }
+    into(layout.buildDirectory.dir("generated/app-src"))
+}
+
+sourceSets {
+    main {
+        java.srcDir(syncAppSources)
+    }
+}
+
+dependencies {
+    implementation(libs.org.json)
+    implementation(libs.jackson.core)
+    implementation(libs.jackson.databind)
+    implementation(libs.jackson.annotations)
+    compileOnly(libs.lombok)
+    annotationProcessor(libs.lombok)
+    jmh(libs.jmh.core)
+    jmhAnnotationProcessor(libs.jmh.generator.annprocess)
+}
+
+// 离线回放抓包：./gradlew :benchmark:replay -Pcapture=/path/to/capture.bin [-PreplayArgs="--interval 0 --latency -1"]
+val replay by tasks.registering(JavaExec::class) {
+    group = "benchmark"
+    description = "在 JVM 上回放 RPC 抓包，输出运行耗时与请求数"
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass = "fansirsqi.xposed.sesame.benchmark.ReplayRunner"
+    args(providers.gradleProperty("capture").orElse("").get())
+    args(providers.gradleProperty("replayArgs").map { it.split(" ").filter(String::isNotBlank) }.orElse(emptyList()).get())
+}
+
+// 运行：./gradlew :benchmark:jmh
+// 结果以 JSON 输出到 benchmark/build/results/jmh/results.json，可用 jmh.morethan.io 等工具对比不同版本
+jmh {
+    jmhVersion = libs.versions.jmh.get()
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+    profilers = listOf("gc")
+    includes = providers.gradleProperty("jmhIncludes").map { listOf(it) }.orElse(listOf(".*"))
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+}
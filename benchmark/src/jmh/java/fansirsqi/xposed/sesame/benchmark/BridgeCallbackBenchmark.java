@@ -0,0 +1,70 @@
+package fansirsqi.xposed.sesame.benchmark;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import fansirsqi.xposed.sesame.entity.RpcEntity;
+import fansirsqi.xposed.sesame.hook.rpc.bridge.BridgeCallbackPool;
+import fansirsqi.xposed.sesame.hook.rpc.bridge.FastJsonAccessor;
+
+/**
+ * 每次请求创建 BridgeCallback 代理与使用代理池的对比，配合 gc profiler 观察每次请求的分配量
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BridgeCallbackBenchmark {
+    private final Class<?>[] bridgeCallbackClazzArray = {BridgeCallback.class};
+    private BridgeCallbackPool callbackPool;
+    private JSONObject response;
+
+    @Setup
+    public void setup() throws Exception {
+        callbackPool = new BridgeCallbackPool(getClass().getClassLoader(), bridgeCallbackClazzArray);
+        response = new JSONObject("{\"success\":true,\"resultCode\":\"SUCCESS\"}");
+    }
+
+    /**
+     * 旧版 NewRpcBridge 的做法：每次请求新建代理和处理器
+     */
+    @Benchmark
+    public RpcEntity proxyPerRequest() {
+        RpcEntity rpcEntity = new RpcEntity("alipay.antforest.forestHomePage.queryHomePage", "[{}]");
+        BridgeCallback callback = (BridgeCallback) Proxy.newProxyInstance(getClass().getClassLoader(), bridgeCallbackClazzArray, (proxy, method, args) -> {
+            if ("sendJSONResponse".equals(method.getName()) && args != null && args.length == 1) {
+                Object obj = args[0];
+                rpcEntity.setResponseObject(obj, FastJsonAccessor.toJSONString(obj));
+                if (!FastJsonAccessor.containsKey(obj, "success") && !FastJsonAccessor.containsKey(obj, "isSuccess")) {
+                    rpcEntity.setError();
+                }
+            }
+            return null;
+        });
+        callback.sendJSONResponse(response);
+        return rpcEntity;
+    }
+
+    @Benchmark
+    public RpcEntity pooled() {
+        RpcEntity rpcEntity = new RpcEntity("alipay.antforest.forestHomePage.queryHomePage", "[{}]");
+        BridgeCallback callback = (BridgeCallback) callbackPool.acquire(rpcEntity, null);
+        callback.sendJSONResponse(response);
+        return rpcEntity;
+    }
+
+    /**
+     * 对应支付宝的 BridgeCallback 接口
+     */
+    public interface BridgeCallback {
+        void sendJSONResponse(Object obj);
+    }
+}
@@ -0,0 +1,130 @@
+package fansirsqi.xposed.sesame.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import fansirsqi.xposed.sesame.hook.rpc.intervallimit.DefaultIntervalLimit;
+import fansirsqi.xposed.sesame.hook.rpc.intervallimit.StripedPacer;
+import fansirsqi.xposed.sesame.hook.rpc.intervallimit.TokenBucket;
+
+/**
+ * 50 个能量球在同一时刻成熟，8 个子任务线程同时收取，测量全部收取完成的耗时。
+ * 时间按 1/50 缩放：收取间隔 1000ms -> 20ms，collectEnergy 方法间隔 200ms -> 4ms，请求耗时 500ms -> 10ms。
+ * globalLock 为旧版 AntForest.collectEnergy 的做法：所有收取共用一把锁并在锁内睡眠；
+ * striped 为按好友分条的间隔加账号整体的方法级令牌桶，不同好友之间只受方法级速率限制。
+ * friends 为能量球分布的好友数，为 1 时所有能量球属于同一好友，两种做法都只能串行。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CollectPacingBenchmark {
+    private static final int BUBBLES = 50;
+    private static final int THREADS = 8;
+    private static final long COLLECT_INTERVAL = 20;
+    private static final int METHOD_INTERVAL = 4;
+    private static final long RPC_TIME = 10;
+
+    @Param({"1", "10", "50"})
+    public int friends;
+
+    private ExecutorService executor;
+    private final Object globalLock = new Object();
+    private long globalLastTime;
+    private StripedPacer pacer;
+    private TokenBucket methodBucket;
+
+    @Setup
+    public void setup() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        globalLastTime = 0;
+        pacer = new StripedPacer();
+        methodBucket = new TokenBucket(new DefaultIntervalLimit(METHOD_INTERVAL));
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void globalLock() throws InterruptedException {
+        run(userId -> {
+            synchronized (globalLock) {
+                sleep(globalLastTime + COLLECT_INTERVAL - System.currentTimeMillis());
+                globalLastTime = System.currentTimeMillis();
+            }
+            enterMethodLimit();
+            sleep(RPC_TIME);
+        });
+    }
+
+    @Benchmark
+    public void striped() throws InterruptedException {
+        run(userId -> {
+            sleep(pacer.reserve(userId, System.currentTimeMillis(), COLLECT_INTERVAL) - System.currentTimeMillis());
+            enterMethodLimit();
+            sleep(RPC_TIME);
+        });
+    }
+
+    /**
+     * 与 RpcIntervalLimit 方法级令牌桶相同的等待方式
+     */
+    private void enterMethodLimit() {
+        long now = System.currentTimeMillis();
+        sleep(methodBucket.reserve(now, now) - now);
+    }
+
+    private void run(Collect collect) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(BUBBLES);
+        for (int i = 0; i < BUBBLES; i++) {
+            String userId = "user" + (i % friends);
+            executor.execute(() -> {
+                try {
+                    collect.collect(userId);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private interface Collect {
+        void collect(String userId);
+    }
+}
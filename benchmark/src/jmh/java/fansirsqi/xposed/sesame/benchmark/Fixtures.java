@@ -0,0 +1,22 @@
+package fansirsqi.xposed.sesame.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 读取 fixtures 目录下的测试数据
+ */
+public class Fixtures {
+
+    public static String read(String name) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("fixture 不存在：" + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("读取 fixture 失败：" + name, e);
+        }
+    }
+}
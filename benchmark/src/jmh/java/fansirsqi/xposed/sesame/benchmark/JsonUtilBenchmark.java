@@ -0,0 +1,43 @@
+package fansirsqi.xposed.sesame.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+import fansirsqi.xposed.sesame.util.JsonUtil;
+
+/**
+ * Status 保存时的序列化。Status 依赖配置与文件模块，无法在纯 JVM 中加载，
+ * 这里使用字段结构一致的 fixture 反序列化后的对象，序列化路径与 Status.save 相同。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonUtilBenchmark {
+    private Object status;
+
+    @Setup
+    public void setup() {
+        status = JsonUtil.parseObject(Fixtures.read("status.json"), new TypeReference<LinkedHashMap<String, Object>>() {
+        });
+    }
+
+    @Benchmark
+    public String formatJson() {
+        return JsonUtil.formatJson(status);
+    }
+
+    @Benchmark
+    public String formatJsonCompact() {
+        return JsonUtil.formatJson(status, false);
+    }
+}
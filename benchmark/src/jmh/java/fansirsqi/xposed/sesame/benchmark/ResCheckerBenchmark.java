@@ -0,0 +1,57 @@
+package fansirsqi.xposed.sesame.benchmark;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import fansirsqi.xposed.sesame.util.ResChecker;
+
+/**
+ * 响应结果检查，分别覆盖 success 字段命中、resultCode 正则匹配、检查失败以及从字符串解析的路径
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResCheckerBenchmark {
+    private static final String TAG = "ResCheckerBenchmark";
+    private String homeResponse;
+    private JSONObject successObject;
+    private JSONObject resultCodeObject;
+    private JSONObject failedObject;
+
+    @Setup
+    public void setup() throws JSONException {
+        homeResponse = Fixtures.read("forest_home.json");
+        successObject = new JSONObject(homeResponse);
+        resultCodeObject = new JSONObject("{\"resultCode\":\"100\",\"resultDesc\":\"成功\",\"data\":{\"count\":3}}");
+        failedObject = new JSONObject("{\"resultCode\":\"PARAM_ILLEGAL\",\"resultDesc\":\"参数错误\",\"memo\":\"FAILED\"}");
+    }
+
+    @Benchmark
+    public boolean checkSuccess() {
+        return ResChecker.checkRes(TAG, successObject);
+    }
+
+    @Benchmark
+    public boolean checkResultCode() {
+        return ResChecker.checkRes(TAG, resultCodeObject);
+    }
+
+    @Benchmark
+    public boolean checkFailed() {
+        return ResChecker.checkRes(TAG, failedObject);
+    }
+
+    @Benchmark
+    public boolean checkString() throws JSONException {
+        return ResChecker.checkRes(TAG, homeResponse);
+    }
+}
@@ -0,0 +1,45 @@
+package fansirsqi.xposed.sesame.benchmark;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import fansirsqi.xposed.sesame.entity.RpcEntity;
+
+/**
+ * 构建 rpc 请求参数：原有的 org.json 序列化方式与直接写入 Map（fastjson JSONObject 即基于 HashMap）的方式
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RpcEntityBenchmark {
+    private RpcEntity rpcEntity;
+
+    @Setup
+    public void setup() {
+        rpcEntity = new RpcEntity("alipay.antforest.forestHomePage.queryHomePage",
+                "[{\"activityParam\":{},\"configVersionMap\":{\"wateringBubbleConfig\":\"0\"},\"skipWhackMole\":false,\"source\":\"chInfo_ch_appcenter__chsub_9patch\",\"version\":\"20250101\"}]",
+                null, "alipay", "queryHomePage", "alipay.antforest.forestHomePage");
+    }
+
+    @Benchmark
+    public String getRpcFullRequestData() throws JSONException {
+        return rpcEntity.getRpcFullRequestData();
+    }
+
+    @Benchmark
+    public Map<String, Object> fillRpcFullRequestData() {
+        Map<String, Object> request = new HashMap<>();
+        rpcEntity.fillRpcFullRequestData(request);
+        return request;
+    }
+}
@@ -0,0 +1,130 @@
+package fansirsqi.xposed.sesame.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fansirsqi.xposed.sesame.entity.RpcLane;
+import fansirsqi.xposed.sesame.hook.rpc.intervallimit.DefaultIntervalLimit;
+import fansirsqi.xposed.sesame.hook.rpc.intervallimit.IntervalLimit;
+import fansirsqi.xposed.sesame.hook.rpc.intervallimit.RpcIntervalLimit;
+
+/**
+ * 32 线程并发进入间隔限制。
+ * 间隔设为 0，测量的是限流本身的同步开销而不是等待时间：
+ * 令牌桶预约为一次 CAS，旧实现为每个方法一把锁（并在锁内睡眠），此处保留旧实现的副本作为对照。
+ * 未声明通道的方法为后台通道，预约前会检查高优先级通道与空闲许可；sharedMethodCritical 为直接预约的对照。
+ * paced 开头的用例使用真实间隔 {@link #PACED_INTERVAL}，以每秒许可数输出，理想值为 1000 / PACED_INTERVAL，
+ * 用于观察 32 线程争用下限流实际放行的速率以及与旧实现的差距。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(32)
+public class RpcIntervalLimitBenchmark {
+    private static final String SHARED_METHOD = "alipay.antforest.forestHomePage.queryFriendHomePage";
+    private static final String PACED_METHOD = "alipay.antforest.benchmark.paced";
+    private static final int PACED_INTERVAL = 5;
+    private static final int METHOD_COUNT = 8;
+    private final String[] methods = new String[METHOD_COUNT];
+    private final Map<String, IntervalLimit> legacyLimitMap = new ConcurrentHashMap<>();
+
+    @Setup
+    public void setup() {
+        RpcIntervalLimit.clearIntervalLimit();
+        RpcIntervalLimit.addIntervalLimit(SHARED_METHOD, 0);
+        legacyLimitMap.put(SHARED_METHOD, new DefaultIntervalLimit(0));
+        for (int i = 0; i < METHOD_COUNT; i++) {
+            methods[i] = "alipay.antforest.benchmark.method" + i;
+            RpcIntervalLimit.addIntervalLimit(methods[i], 0);
+            legacyLimitMap.put(methods[i], new DefaultIntervalLimit(0));
+        }
+        RpcIntervalLimit.addIntervalLimit(PACED_METHOD, PACED_INTERVAL);
+        legacyLimitMap.put(PACED_METHOD, new DefaultIntervalLimit(PACED_INTERVAL));
+        RpcIntervalLimit.addPrefixIntervalLimit("alipay.antforest.", new DefaultIntervalLimit(0), 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        RpcIntervalLimit.clearIntervalLimit();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadMethod {
+        private static final AtomicInteger NEXT = new AtomicInteger();
+        private final int index = NEXT.getAndIncrement() % METHOD_COUNT;
+    }
+
+    @Benchmark
+    public long sharedMethod() {
+        return RpcIntervalLimit.enterIntervalLimit(SHARED_METHOD);
+    }
+
+    @Benchmark
+    public long sharedMethodCritical() {
+        return RpcIntervalLimit.enterIntervalLimit(SHARED_METHOD, RpcLane.CRITICAL);
+    }
+
+    @Benchmark
+    public long spreadMethods(ThreadMethod threadMethod) {
+        return RpcIntervalLimit.enterIntervalLimit(methods[threadMethod.index]);
+    }
+
+    @Benchmark
+    public long legacySharedMethod() {
+        return legacyEnterIntervalLimit(SHARED_METHOD);
+    }
+
+    @Benchmark
+    public long legacySpreadMethods(ThreadMethod threadMethod) {
+        return legacyEnterIntervalLimit(methods[threadMethod.index]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long pacedMethod() {
+        return RpcIntervalLimit.enterIntervalLimit(PACED_METHOD);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long pacedMethodCritical() {
+        return RpcIntervalLimit.enterIntervalLimit(PACED_METHOD, RpcLane.CRITICAL);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long legacyPacedMethod() {
+        return legacyEnterIntervalLimit(PACED_METHOD);
+    }
+
+    /**
+     * 旧版 RpcIntervalLimit.enterIntervalLimit 的副本
+     */
+    private long legacyEnterIntervalLimit(String method) {
+        IntervalLimit intervalLimit = legacyLimitMap.get(method);
+        synchronized (intervalLimit) {
+            long sleep = intervalLimit.getInterval() - (System.currentTimeMillis() - intervalLimit.getTime());
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            intervalLimit.setTime(System.currentTimeMillis());
+            return sleep;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package fansirsqi.xposed.sesame.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import fansirsqi.xposed.sesame.util.TimeUtil;
+
+/**
+ * 时间范围判断，TaskCommon 每轮任务都会用能量时间、模块休眠时间配置调用一次
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimeUtilBenchmark {
+    private final List<String> timeRangeList = Arrays.asList("0100-0540", "0700-0730", "2200-2359");
+    private long timeMillis;
+
+    @Setup
+    public void setup() {
+        timeMillis = System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public Boolean checkInTimeRange() {
+        return TimeUtil.checkInTimeRange(timeMillis, "0700-0730");
+    }
+
+    @Benchmark
+    public Boolean checkInTimeRangeList() {
+        return TimeUtil.checkInTimeRange(timeMillis, timeRangeList);
+    }
+}
@@ -0,0 +1,68 @@
+package fansirsqi.xposed.sesame.task.antForest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import fansirsqi.xposed.sesame.benchmark.Fixtures;
+
+/**
+ * 能量球解析，直接测量 AntForest 使用的 {@link BubbleParser}（包内可见，因此基准测试放在同一包下），窗口按默认检查间隔计算。
+ * fixture 为 48 个能量球的主页响应，四种收取状态各占四分之一。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BubbleParseBenchmark {
+    /**
+     * 默认执行间隔 50 分钟
+     */
+    private static final int CHECK_INTERVAL_INT = 50 * 60_000;
+    private static final long WINDOW = CHECK_INTERVAL_INT + CHECK_INTERVAL_INT / 2;
+    private String homeResponse;
+    private JSONObject homeObject;
+    private long serverTime;
+
+    @Setup
+    public void setup() throws JSONException {
+        homeResponse = Fixtures.read("forest_home.json");
+        homeObject = new JSONObject(homeResponse);
+        serverTime = homeObject.getLong("now");
+    }
+
+    /**
+     * 仅解析已构建的 JSONObject
+     */
+    @Benchmark
+    public void extract(Blackhole bh) throws JSONException {
+        List<Long> availableBubbles = new ArrayList<>();
+        List<BubbleParser.WaitingBubble> waitingBubbles = new ArrayList<>();
+        BubbleParser.extractBubbleInfo(homeObject, serverTime, WINDOW, availableBubbles, waitingBubbles, null);
+        bh.consume(availableBubbles);
+        bh.consume(waitingBubbles);
+    }
+
+    /**
+     * 从响应字符串开始，包含 JSONObject 构建
+     */
+    @Benchmark
+    public void parseAndExtract(Blackhole bh) throws JSONException {
+        JSONObject userHomeObj = new JSONObject(homeResponse);
+        List<Long> availableBubbles = new ArrayList<>();
+        List<BubbleParser.WaitingBubble> waitingBubbles = new ArrayList<>();
+        BubbleParser.extractBubbleInfo(userHomeObj, userHomeObj.getLong("now"), WINDOW, availableBubbles, waitingBubbles, null);
+        bh.consume(availableBubbles);
+        bh.consume(waitingBubbles);
+    }
+}
@@ -0,0 +1,10 @@
+package android.content;
+
+import android.content.res.AssetManager;
+
+/**
+ * 基准测试使用的 Android Context 替身，仅用于编译 app 模块同步过来的源码
+ */
+public abstract class Context {
+    public abstract AssetManager getAssets();
+}
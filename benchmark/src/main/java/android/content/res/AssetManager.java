@@ -0,0 +1,11 @@
+package android.content.res;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 基准测试使用的 Android AssetManager 替身，仅用于编译 app 模块同步过来的源码
+ */
+public abstract class AssetManager {
+    public abstract InputStream open(String fileName) throws IOException;
+}
@@ -0,0 +1,99 @@
+package fansirsqi.xposed.sesame.benchmark;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import fansirsqi.xposed.sesame.hook.ApplicationHook;
+import fansirsqi.xposed.sesame.hook.RequestManager;
+import fansirsqi.xposed.sesame.hook.rpc.bridge.ReplayRpcBridge;
+import fansirsqi.xposed.sesame.hook.rpc.cache.RpcResponseCache;
+import fansirsqi.xposed.sesame.hook.rpc.cache.RpcSingleFlight;
+import fansirsqi.xposed.sesame.hook.rpc.intervallimit.RpcIntervalLimit;
+import fansirsqi.xposed.sesame.hook.rpc.replay.RpcCapture;
+import fansirsqi.xposed.sesame.hook.rpc.stats.RpcStatistics;
+
+/**
+ * 在普通 JVM 上离线回放任务：安装 {@link ReplayRpcBridge}，按抓包中的顺序重新发起任务的全部请求，
+ * 输出运行耗时、实际发出的请求数与统计快照，用于对比请求层改动前后的运行时间和请求数。
+ * <p>
+ * 请求经过模块实际使用的 RequestManager、响应缓存、请求合并、限流与统计；
+ * 缓存与合并的注册来自同步过来的 AntForestRpcCall、AntFarmRpcCall，与模块一致。
+ * <p>
+ * 运行：./gradlew :benchmark:replay -Pcapture=/path/to/capture.bin [-PreplayArgs="--interval 0 --latency -1"]
+ * <ul>
+ *     <li>--interval：每个方法的限流间隔（毫秒），默认 0 只测量请求层本身</li>
+ *     <li>--latency：固定响应耗时（毫秒），小于 0 时按抓包记录的耗时等待，默认 0</li>
+ * </ul>
+ */
+public class ReplayRunner {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args[0].isEmpty()) {
+            System.err.println("usage: ReplayRunner <capture.bin> [--interval <ms>] [--latency <ms>]");
+            System.exit(2);
+        }
+        File captureFile = new File(args[0]);
+        int interval = 0;
+        long latency = 0;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if ("--interval".equals(args[i])) {
+                interval = Integer.parseInt(args[i + 1]);
+            } else if ("--latency".equals(args[i])) {
+                latency = Long.parseLong(args[i + 1]);
+            } else {
+                System.err.println("unknown option: " + args[i]);
+                System.exit(2);
+            }
+        }
+        // 触发请求类的静态注册
+        Class.forName("fansirsqi.xposed.sesame.task.antForest.AntForestRpcCall");
+        Class.forName("fansirsqi.xposed.sesame.task.antFarm.AntFarmRpcCall");
+
+        List<RpcCapture.Record> records = RpcCapture.readAll(captureFile);
+        Set<String> methods = new LinkedHashSet<>();
+        for (RpcCapture.Record record : records) {
+            methods.add(record.getMethod());
+        }
+        RpcIntervalLimit.clearIntervalLimit();
+        for (String method : methods) {
+            RpcIntervalLimit.addIntervalLimit(method, interval);
+        }
+        ReplayRpcBridge bridge = new ReplayRpcBridge(captureFile, latency < 0, Math.max(latency, 0));
+        bridge.load();
+        ApplicationHook.rpcBridge = bridge;
+        try {
+            long failed = run(records);
+            System.out.println(RpcStatistics.snapshot());
+            System.out.println("# records " + records.size() + " methods " + methods.size());
+            System.out.println("# rpc " + bridge.getRequestCount() + " miss " + bridge.getMissCount() + " failed " + failed);
+            System.out.println("# cache hit " + RpcResponseCache.getHitCount() + " miss " + RpcResponseCache.getMissCount()
+                    + " invalidate " + RpcResponseCache.getInvalidateCount() + " collapsed " + RpcSingleFlight.getCollapsedCount());
+        } finally {
+            bridge.unload();
+            ApplicationHook.rpcBridge = null;
+        }
+        System.exit(0);
+    }
+
+    /**
+     * 按抓包顺序发起请求
+     *
+     * @param records 抓包记录
+     * @return 未取得响应的请求数
+     */
+    private static long run(List<RpcCapture.Record> records) {
+        long failed = 0;
+        long startTime = System.nanoTime();
+        for (RpcCapture.Record record : records) {
+            try {
+                RequestManager.requestString(record.getMethod(), record.getRequestData(), 1, 0);
+            } catch (IllegalStateException e) {
+                failed++;
+            }
+        }
+        System.out.println("# elapsed " + (System.nanoTime() - startTime) / 1_000_000 + "ms");
+        return failed;
+    }
+}
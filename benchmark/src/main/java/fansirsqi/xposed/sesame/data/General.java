@@ -0,0 +1,8 @@
+package fansirsqi.xposed.sesame.data;
+
+/**
+ * 基准测试使用的常量替身，对应 app 模块中 Kotlin 的 General 对象
+ */
+public class General {
+    public static final String JSON_OBJECT_NAME = "com.alibaba.fastjson.JSONObject";
+}
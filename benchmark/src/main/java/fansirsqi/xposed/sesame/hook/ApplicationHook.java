@@ -0,0 +1,25 @@
+package fansirsqi.xposed.sesame.hook;
+
+import fansirsqi.xposed.sesame.entity.AlipayVersion;
+import fansirsqi.xposed.sesame.hook.rpc.bridge.RpcBridge;
+
+/**
+ * 基准测试与回放使用的 ApplicationHook 替身，只保留请求层用到的 rpc 桥接与支付宝版本，
+ * 由 {@link fansirsqi.xposed.sesame.benchmark.ReplayRunner} 安装回放桥接
+ */
+public class ApplicationHook {
+    public static volatile RpcBridge rpcBridge;
+    private static volatile AlipayVersion alipayVersion = new AlipayVersion("10.6.0");
+
+    public static AlipayVersion getAlipayVersion() {
+        return alipayVersion;
+    }
+
+    public static void setAlipayVersion(AlipayVersion alipayVersion) {
+        ApplicationHook.alipayVersion = alipayVersion;
+    }
+
+    public static boolean isOffline() {
+        return false;
+    }
+}
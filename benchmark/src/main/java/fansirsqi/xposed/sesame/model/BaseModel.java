@@ -0,0 +1,20 @@
+package fansirsqi.xposed.sesame.model;
+
+import fansirsqi.xposed.sesame.model.modelFieldExt.BooleanModelField;
+import fansirsqi.xposed.sesame.model.modelFieldExt.IntegerModelField;
+
+/**
+ * 基准测试使用的基础配置替身，只保留同步源码用到的字段，取值为模块默认配置
+ */
+public class BaseModel {
+    private static final BooleanModelField debugMode = new BooleanModelField(false);
+    private static final IntegerModelField rpcLogSampleRate = new IntegerModelField(0);
+
+    public static BooleanModelField getDebugMode() {
+        return debugMode;
+    }
+
+    public static IntegerModelField getRpcLogSampleRate() {
+        return rpcLogSampleRate;
+    }
+}
@@ -0,0 +1,20 @@
+package fansirsqi.xposed.sesame.model.modelFieldExt;
+
+/**
+ * 基准测试使用的配置字段替身
+ */
+public class BooleanModelField {
+    private volatile Boolean value;
+
+    public BooleanModelField(Boolean value) {
+        this.value = value;
+    }
+
+    public Boolean getValue() {
+        return value;
+    }
+
+    public void setValue(Boolean value) {
+        this.value = value;
+    }
+}
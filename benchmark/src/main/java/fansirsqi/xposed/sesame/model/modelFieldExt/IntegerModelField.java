@@ -0,0 +1,20 @@
+package fansirsqi.xposed.sesame.model.modelFieldExt;
+
+/**
+ * 基准测试使用的配置字段替身
+ */
+public class IntegerModelField {
+    private volatile Integer value;
+
+    public IntegerModelField(Integer value) {
+        this.value = value;
+    }
+
+    public Integer getValue() {
+        return value;
+    }
+
+    public void setValue(Integer value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,31 @@
+package fansirsqi.xposed.sesame.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 基准测试与回放使用的文件工具替身，只保留请求统计用到的方法，文件写到 build 目录下
+ */
+public class Files {
+    private static final File LOG_DIR = new File(System.getProperty("sesame.logDir", "build/replay"));
+
+    public static File getRpcStatsFile() {
+        return new File(LOG_DIR, "rpc_stats.log");
+    }
+
+    public static synchronized boolean write2File(String s, File f) {
+        File parent = f.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            return false;
+        }
+        try (FileOutputStream out = new FileOutputStream(f)) {
+            out.write(s.getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (IOException e) {
+            Log.printStackTrace(e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package fansirsqi.xposed.sesame.util;
+
+import java.util.function.Supplier;
+
+/**
+ * 基准测试使用的日志替身，方法签名与 app 模块一致。
+ * 不输出任何内容，但调用方拼接日志参数的开销仍计入测量结果；
+ * 延迟构建的消息在 {@link #setEnabled} 开启（默认）时照常构建后丢弃，与日志启用时的开销一致。
+ */
+public class Log {
+    private static volatile boolean enabled = true;
+
+    public enum LogType {
+        SYSTEM, RUNTIME, RECORD, DEBUG, FOREST, FARM, OTHER, ERROR, CAPTURE
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Log.enabled = enabled;
+    }
+
+    public static boolean isEnabled(LogType logType) {
+        return enabled;
+    }
+
+    private static void consume(Supplier<String> msg) {
+        if (enabled) {
+            msg.get();
+        }
+    }
+
+    private static void consume(String format, Object... args) {
+        if (enabled) {
+            StringBuilder sb = new StringBuilder(format);
+            for (Object arg : args) {
+                sb.append(arg);
+            }
+        }
+    }
+
+    public static void system(String msg) {
+    }
+
+    public static void system(String TAG, String msg) {
+    }
+
+    public static void system(String TAG, Supplier<String> msg) {
+        consume(msg);
+    }
+
+    public static void system(String TAG, String format, Object... args) {
+        consume(format, args);
+    }
+
+    public static void runtime(String msg) {
+    }
+
+    public static void runtime(String TAG, String msg) {
+    }
+
+    public static void runtime(String TAG, Supplier<String> msg) {
+        consume(msg);
+    }
+
+    public static void runtime(String TAG, String format, Object... args) {
+        consume(format, args);
+    }
+
+    public static void record(String msg) {
+    }
+
+    public static void record(String TAG, String msg) {
+    }
+
+    public static void record(String TAG, Supplier<String> msg) {
+        consume(msg);
+    }
+
+    public static void record(String TAG, String format, Object... args) {
+        consume(format, args);
+    }
+
+    public static void forest(String msg) {
+    }
+
+    public static void forest(String TAG, String msg) {
+    }
+
+    public static void forest(String TAG, Supplier<String> msg) {
+        consume(msg);
+    }
+
+    public static void forest(String TAG, String format, Object... args) {
+        consume(format, args);
+    }
+
+    public static void farm(String msg) {
+    }
+
+    public static void farm(String TAG, String msg) {
+    }
+
+    public static void farm(String TAG, Supplier<String> msg) {
+        consume(msg);
+    }
+
+    public static void farm(String TAG, String format, Object... args) {
+        consume(format, args);
+    }
+
+    public static void other(String msg) {
+    }
+
+    public static void other(String TAG, String msg) {
+    }
+
+    public static void other(String TAG, Supplier<String> msg) {
+        consume(msg);
+    }
+
+    public static void other(String TAG, String format, Object... args) {
+        consume(format, args);
+    }
+
+    public static void debug(String msg) {
+    }
+
+    public static void debug(String TAG, String msg) {
+    }
+
+    public static void debug(String TAG, Supplier<String> msg) {
+        consume(msg);
+    }
+
+    public static void debug(String TAG, String format, Object... args) {
+        consume(format, args);
+    }
+
+    public static void error(String msg) {
+    }
+
+    public static void error(String TAG, String msg) {
+    }
+
+    public static void error(String TAG, Supplier<String> msg) {
+        consume(msg);
+    }
+
+    public static void error(String TAG, String format, Object... args) {
+        consume(format, args);
+    }
+
+    public static void capture(String msg) {
+    }
+
+    public static void capture(String TAG, String msg) {
+    }
+
+    public static void capture(String TAG, Supplier<String> msg) {
+        consume(msg);
+    }
+
+    public static void capture(String TAG, String format, Object... args) {
+        consume(format, args);
+    }
+
+    public static void printStackTrace(Throwable th) {
+    }
+
+    public static void printStackTrace(String msg, Throwable th) {
+    }
+
+    public static void printStackTrace(String TAG, String msg, Throwable th) {
+    }
+
+    public static void printStackTrace(Exception e) {
+    }
+
+    public static void printStackTrace(String msg, Exception e) {
+    }
+
+    public static void printStackTrace(String TAG, String msg, Exception e) {
+    }
+}
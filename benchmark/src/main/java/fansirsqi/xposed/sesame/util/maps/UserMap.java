@@ -0,0 +1,16 @@
+package fansirsqi.xposed.sesame.util.maps;
+
+/**
+ * 基准测试与回放使用的用户信息替身，只保留响应缓存用到的当前账号
+ */
+public class UserMap {
+    private static volatile String currentUid = "replay";
+
+    public static String getCurrentUid() {
+        return currentUid;
+    }
+
+    public static void setCurrentUserId(String userId) {
+        currentUid = userId;
+    }
+}
@@ -20,3 +20,4 @@ plugins {
     id("org.gradle.toolchains.foojay-resolver-convention") version "0.10.0"
 }
 include(":app")
+include(":benchmark")